@@ -33,6 +33,18 @@ public interface Parallelogram extends Shape {
 	 */
 	public float getHeight();
 	
+	/**
+	 * Returns the least x coordinate of this shape
+	 * @return
+	 */
+	public float getMinX();
+	
+	/**
+	 * Returns the least y coordinate of this shape
+	 * @return
+	 */
+	public float getMinY();
+	
 	/**
 	 * Returns the greatest x coordinate of this shape
 	 * @return
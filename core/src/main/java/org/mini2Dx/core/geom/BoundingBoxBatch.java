@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.geom;
+
+import org.mini2Dx.core.engine.Parallelogram;
+
+/**
+ * Stores axis-aligned bounding boxes in packed minX/minY/maxX/maxY arrays so
+ * that many overlap tests can run in tight, allocation-free loops. The static
+ * kernels can also be used directly on caller-owned arrays.
+ * 
+ * Boxes that share an edge are considered overlapping, matching
+ * {@link Rectangle#intersects(Rectangle)}.
+ */
+public class BoundingBoxBatch {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private float[] minX, minY, maxX, maxY;
+	private int[] order;
+	private int size, orderSize;
+
+	/**
+	 * Default constructor. Creates a batch with an initial capacity of 16
+	 */
+	public BoundingBoxBatch() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param capacity
+	 *            The initial number of boxes to allocate space for
+	 */
+	public BoundingBoxBatch(int capacity) {
+		capacity = Math.max(1, capacity);
+		minX = new float[capacity];
+		minY = new float[capacity];
+		maxX = new float[capacity];
+		maxY = new float[capacity];
+		order = new int[capacity];
+	}
+
+	/**
+	 * Adds a box to the batch
+	 * 
+	 * @return The index of the box
+	 */
+	public int add(float minX, float minY, float maxX, float maxY) {
+		if (size == this.minX.length) {
+			resize(size * 2);
+		}
+		int index = size++;
+		set(index, minX, minY, maxX, maxY);
+		return index;
+	}
+
+	/**
+	 * Adds the bounds of a {@link Parallelogram} to the batch
+	 * 
+	 * @param parallelogram
+	 *            The {@link Parallelogram} to add
+	 * @return The index of the box
+	 */
+	public int add(Parallelogram parallelogram) {
+		return add(parallelogram.getMinX(), parallelogram.getMinY(),
+				parallelogram.getMaxX(), parallelogram.getMaxY());
+	}
+
+	/**
+	 * Updates the bounds of an existing box
+	 * 
+	 * @param index
+	 *            The index of the box
+	 */
+	public void set(int index, float minX, float minY, float maxX, float maxY) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index
+					+ " is out of bounds for size " + size);
+		}
+		this.minX[index] = minX;
+		this.minY[index] = minY;
+		this.maxX[index] = maxX;
+		this.maxY[index] = maxY;
+	}
+
+	/**
+	 * Updates the bounds of an existing box from a {@link Parallelogram}
+	 * 
+	 * @param index
+	 *            The index of the box
+	 * @param parallelogram
+	 *            The {@link Parallelogram} to copy the bounds of
+	 */
+	public void set(int index, Parallelogram parallelogram) {
+		set(index, parallelogram.getMinX(), parallelogram.getMinY(),
+				parallelogram.getMaxX(), parallelogram.getMaxY());
+	}
+
+	/**
+	 * Removes all boxes. The allocated capacity is kept.
+	 */
+	public void clear() {
+		size = 0;
+		orderSize = 0;
+	}
+
+	/**
+	 * Returns the indices of all boxes that overlap the specified box
+	 * 
+	 * @param results
+	 *            The array to store the indices in. Must have a length of at
+	 *            least {@link #size()}.
+	 * @return The number of indices written to results
+	 */
+	public int query(float minX, float minY, float maxX, float maxY,
+			int[] results) {
+		return overlaps(minX, minY, maxX, maxY, this.minX, this.minY,
+				this.maxX, this.maxY, size, results);
+	}
+
+	/**
+	 * Reports every pair of overlapping boxes in this batch. The sort order
+	 * from the previous call is kept, so boxes that move a little between
+	 * frames are re-sorted in close to linear time.
+	 * 
+	 * @param callback
+	 *            The {@link OverlapCallback} to notify
+	 */
+	public void sweepAndPrune(OverlapCallback callback) {
+		while (orderSize < size) {
+			order[orderSize] = orderSize;
+			orderSize++;
+		}
+		sweepAndPrune(minX, minY, maxX, maxY, size, order, callback);
+	}
+
+	private void resize(int capacity) {
+		minX = copyOf(minX, capacity);
+		minY = copyOf(minY, capacity);
+		maxX = copyOf(maxX, capacity);
+		maxY = copyOf(maxY, capacity);
+		int[] newOrder = new int[capacity];
+		System.arraycopy(order, 0, newOrder, 0, orderSize);
+		order = newOrder;
+	}
+
+	private static float[] copyOf(float[] array, int capacity) {
+		float[] result = new float[capacity];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	/**
+	 * Tests one box against count boxes and stores whether each overlaps.
+	 * The loop is branch-free so that it can be vectorized by the JIT.
+	 * 
+	 * @param results
+	 *            Set to true at each index where the boxes overlap
+	 */
+	public static void overlaps(float minX, float minY, float maxX,
+			float maxY, float[] minXs, float[] minYs, float[] maxXs,
+			float[] maxYs, int count, boolean[] results) {
+		for (int i = 0; i < count; i++) {
+			results[i] = (maxX >= minXs[i]) & (maxXs[i] >= minX)
+					& (maxY >= minYs[i]) & (maxYs[i] >= minY);
+		}
+	}
+
+	/**
+	 * Tests one box against count boxes and stores the indices of those that
+	 * overlap
+	 * 
+	 * @param results
+	 *            The array to store the indices in. Must have a length of at
+	 *            least count.
+	 * @return The number of indices written to results
+	 */
+	public static int overlaps(float minX, float minY, float maxX,
+			float maxY, float[] minXs, float[] minYs, float[] maxXs,
+			float[] maxYs, int count, int[] results) {
+		int total = 0;
+		for (int i = 0; i < count; i++) {
+			results[total] = i;
+			total += ((maxX >= minXs[i]) & (maxXs[i] >= minX)
+					& (maxY >= minYs[i]) & (maxYs[i] >= minY)) ? 1 : 0;
+		}
+		return total;
+	}
+
+	/**
+	 * Reports every pair of overlapping boxes using sort and sweep along the
+	 * x axis
+	 * 
+	 * @param count
+	 *            The number of boxes
+	 * @param order
+	 *            A permutation of 0 to count - 1. It is sorted by minX in
+	 *            place, so passing the same array each frame lets nearly
+	 *            sorted input be handled in close to linear time.
+	 * @param callback
+	 *            The {@link OverlapCallback} to notify
+	 */
+	public static void sweepAndPrune(float[] minXs, float[] minYs,
+			float[] maxXs, float[] maxYs, int count, int[] order,
+			OverlapCallback callback) {
+		for (int i = 1; i < count; i++) {
+			int index = order[i];
+			float key = minXs[index];
+			int j = i - 1;
+			while (j >= 0 && minXs[order[j]] > key) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = index;
+		}
+
+		for (int i = 0; i < count; i++) {
+			int a = order[i];
+			float aMaxX = maxXs[a];
+			float aMinY = minYs[a];
+			float aMaxY = maxYs[a];
+			for (int j = i + 1; j < count; j++) {
+				int b = order[j];
+				if (minXs[b] > aMaxX) {
+					break;
+				}
+				if (aMaxY >= minYs[b] && maxYs[b] >= aMinY) {
+					callback.onOverlap(Math.min(a, b), Math.max(a, b));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of boxes in this batch
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	public float getMinX(int index) {
+		return minX[index];
+	}
+
+	public float getMinY(int index) {
+		return minY[index];
+	}
+
+	public float getMaxX(int index) {
+		return maxX[index];
+	}
+
+	public float getMaxY(int index) {
+		return maxY[index];
+	}
+
+	/**
+	 * A callback for receiving pairs of overlapping boxes
+	 */
+	public interface OverlapCallback {
+
+		/**
+		 * Called once for each overlapping pair of boxes
+		 * 
+		 * @param indexA
+		 *            The lower index of the pair
+		 * @param indexB
+		 *            The higher index of the pair
+		 */
+		public void onOverlap(int indexA, int indexB);
+	}
+}
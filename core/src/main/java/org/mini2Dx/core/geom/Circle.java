@@ -75,7 +75,12 @@ public class Circle implements Shape {
 	public <T extends Positionable> void removePositionChangeListener(
 			PositionChangeListener<T> listener) {
 		if (positionChangleListeners != null) {
-			positionChangleListeners.remove(listener);
+			for (int i = positionChangleListeners.size() - 1; i >= 0; i--) {
+				if (positionChangleListeners.get(i) == listener) {
+					positionChangleListeners.remove(i);
+					break;
+				}
+			}
 		}
 	}
 	
@@ -30,21 +30,18 @@ public class Point extends Vector2 implements Positionable {
 	private static final long serialVersionUID = 3773673953486445831L;
 
 	private List<PositionChangeListener> positionChangeListeners;
-	private Lock positionChangeListenerLock;
+	private volatile Lock positionChangeListenerLock;
 
 	public Point() {
 		super();
-		this.positionChangeListenerLock = new ReentrantLock();
 	}
 
 	public Point(float x, float y) {
 		super(x, y);
-		this.positionChangeListenerLock = new ReentrantLock();
 	}
 
 	public Point(Point point) {
 		super(point);
-		this.positionChangeListenerLock = new ReentrantLock();
 	}
 
 	private void notifyPositionChangeListeners() {
@@ -91,22 +88,44 @@ public class Point extends Vector2 implements Positionable {
 	 *         is not between a and b on the same line
 	 */
 	public boolean isOnLineBetween(Point a, Point b) {
-		float areaOfTriangle = (a.x * (b.y - y) + b.x * (y - a.y) + x
-				* (a.y - b.y)) / 2f;
-		if (areaOfTriangle == 0f) {
-			if (x == a.x && y == a.y)
-				return true;
-			if (x == b.x && y == b.y)
-				return true;
-			if (x == a.x) {
-				/* Same x axis */
-				return (y > a.y && y < b.y) || (y > b.y && y < a.y);
-			} else {
-				/* Same y axis */
-				return (x > a.x && x < b.x) || (x > b.x && x < a.x);
-			}
+		return isOnLineBetween(a.x, a.y, b.x, b.y, x, y);
+	}
+
+	/**
+	 * Returns if the coordinate x,y is between a and b on a line
+	 * 
+	 * @param ax
+	 *            The x coordinate of point a on a line
+	 * @param ay
+	 *            The y coordinate of point a on a line
+	 * @param bx
+	 *            The x coordinate of point b on a line
+	 * @param by
+	 *            The y coordinate of point b on a line
+	 * @param x
+	 *            The x coordinate to test
+	 * @param y
+	 *            The y coordinate to test
+	 * @return False if x,y is not on the same line as a and b OR is not
+	 *         between a and b on the same line
+	 */
+	public static boolean isOnLineBetween(float ax, float ay, float bx,
+			float by, float x, float y) {
+		if (x == ax && y == ay)
+			return true;
+		if (x == bx && y == by)
+			return true;
+
+		float areaOfTriangle = (ax * (by - y) + bx * (y - ay) + x
+				* (ay - by)) / 2f;
+		if (areaOfTriangle != 0f)
+			return false;
+		if (x == ax) {
+			/* Same x axis */
+			return (y > ay && y < by) || (y > by && y < ay);
 		}
-		return false;
+		/* Same y axis */
+		return (x > ax && x < bx) || (x > bx && x < ax);
 	}
 
 	/**
@@ -137,7 +156,7 @@ public class Point extends Vector2 implements Positionable {
 	@Override
 	public <T extends Positionable> void addPostionChangeListener(
 			PositionChangeListener<T> listener) {
-		positionChangeListenerLock.lock();
+		getPositionChangeListenerLock().lock();
 		if (positionChangeListeners == null) {
 			positionChangeListeners = new ArrayList<PositionChangeListener>(1);
 		}
@@ -145,12 +164,35 @@ public class Point extends Vector2 implements Positionable {
 		positionChangeListenerLock.unlock();
 	}
 
+	/**
+	 * Returns the listener lock, creating it on first use so that instances
+	 * without listeners never allocate one
+	 */
+	private Lock getPositionChangeListenerLock() {
+		Lock result = positionChangeListenerLock;
+		if (result == null) {
+			synchronized (this) {
+				result = positionChangeListenerLock;
+				if (result == null) {
+					result = new ReentrantLock();
+					positionChangeListenerLock = result;
+				}
+			}
+		}
+		return result;
+	}
+
 	@Override
 	public <T extends Positionable> void removePositionChangeListener(
 			PositionChangeListener<T> listener) {
 		if (positionChangeListeners != null) {
 			positionChangeListenerLock.lock();
-			positionChangeListeners.remove(listener);
+			for (int i = positionChangeListeners.size() - 1; i >= 0; i--) {
+				if (positionChangeListeners.get(i) == listener) {
+					positionChangeListeners.remove(i);
+					break;
+				}
+			}
 			positionChangeListenerLock.unlock();
 		}
 	}
@@ -22,6 +22,8 @@ import org.mini2Dx.core.engine.Positionable;
 import org.mini2Dx.core.engine.Shape;
 import org.mini2Dx.core.graphics.Graphics;
 
+import com.badlogic.gdx.math.Intersector.MinimumTranslationVector;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 
 /**
@@ -32,10 +34,11 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 		Parallelogram {
 	private static final long serialVersionUID = 4016090439885217620L;
 	private float rotation;
+	private float rotationCos = 1f, rotationSin = 0f;
 	Point topLeft, topRight, bottomLeft, bottomRight, center, rotationalCenter;
 	private float minX, minY, maxX, maxY;
 	private List<PositionChangeListener> positionChangeListeners;
-	private Lock positionChangeListenerLock;
+	private volatile Lock positionChangeListenerLock;
 
 	/**
 	 * Default constructor. Creates a {@link Rectangle} at 0,0 with a width and
@@ -59,7 +62,6 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 	 */
 	public Rectangle(float x, float y, float width, float height) {
 		super(x, y, width, height);
-		positionChangeListenerLock = new ReentrantLock();
 		topLeft = new Point(x, y);
 		topRight = new Point(x + width, y);
 		bottomLeft = new Point(x, y + height);
@@ -89,11 +91,21 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 	}
 
 	private void recalculateCoordinates() {
-		topLeft.set(x, y);
-		topRight.set(x + width, y);
-		bottomLeft.set(x, y + height);
-		bottomRight.set(x + width, y + height);
-		center.set(x + (width / 2f), y + (height / 2f));
+		setCorner(topLeft, x, y);
+		setCorner(topRight, x + width, y);
+		setCorner(bottomLeft, x, y + height);
+		setCorner(bottomRight, x + width, y + height);
+		setCorner(center, x + (width / 2f), y + (height / 2f));
+	}
+
+	/**
+	 * Moves an internal corner without notifying its listeners. This
+	 * {@link Rectangle} notifies its own listeners once the whole mutation is
+	 * complete.
+	 */
+	private static void setCorner(Point corner, float x, float y) {
+		corner.x = x;
+		corner.y = y;
 	}
 
 	private void recalculateMinMax() {
@@ -142,7 +154,7 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 	@Override
 	public <T extends Positionable> void addPostionChangeListener(
 			PositionChangeListener<T> listener) {
-		positionChangeListenerLock.lock();
+		getPositionChangeListenerLock().lock();
 		if (positionChangeListeners == null) {
 			positionChangeListeners = new ArrayList<PositionChangeListener>(1);
 		}
@@ -150,6 +162,24 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 		positionChangeListenerLock.unlock();
 	}
 
+	/**
+	 * Returns the listener lock, creating it on first use so that instances
+	 * without listeners never allocate one
+	 */
+	private Lock getPositionChangeListenerLock() {
+		Lock result = positionChangeListenerLock;
+		if (result == null) {
+			synchronized (this) {
+				result = positionChangeListenerLock;
+				if (result == null) {
+					result = new ReentrantLock();
+					positionChangeListenerLock = result;
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * @see Positionable#removePositionChangeListener(PositionChangeListener)
 	 */
@@ -158,7 +188,13 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 			PositionChangeListener<T> listener) {
 		if (positionChangeListeners != null) {
 			positionChangeListenerLock.lock();
-			positionChangeListeners.remove(listener);
+			/* Listeners such as Quads may be value-equal, so remove by identity */
+			for (int i = positionChangeListeners.size() - 1; i >= 0; i--) {
+				if (positionChangeListeners.get(i) == listener) {
+					positionChangeListeners.remove(i);
+					break;
+				}
+			}
 			positionChangeListenerLock.unlock();
 		}
 	}
@@ -197,10 +233,10 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 	@Override
 	public void setRotationAround(Point center, float degrees) {
 		degrees = degrees % 360;
-		performRotation(-rotation);
-		rotation = degrees;
+		rotateCorners(rotationCos, -rotationSin);
+		setRotationValue(degrees);
 		rotationalCenter = center;
-		performRotation(rotation);
+		rotateCorners(rotationCos, rotationSin);
 		recalculateMinMax();
 		notifyPositionChangeListeners();
 	}
@@ -219,26 +255,115 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 	@Override
 	public void rotateAround(Point center, float degrees) {
 		rotationalCenter = center;
-		performRotation(degrees);
-		rotation += (degrees % 360);
+		if (degrees != 0f) {
+			rotateCorners(
+					MathUtils.cos(degrees * MathUtils.degreesToRadians),
+					MathUtils.sin(degrees * MathUtils.degreesToRadians));
+		}
+		setRotationValue(rotation + (degrees % 360));
 		recalculateMinMax();
 		notifyPositionChangeListeners();
 	}
 
-	private void performRotation(float degrees) {
-		if (degrees == 0)
+	/**
+	 * Sets the rotation and caches its sine and cosine so that later
+	 * mutations can re-apply it without further trigonometry
+	 */
+	private void setRotationValue(float degrees) {
+		rotation = degrees;
+		if (degrees == 0f) {
+			rotationCos = 1f;
+			rotationSin = 0f;
+		} else {
+			rotationCos = MathUtils.cos(degrees * MathUtils.degreesToRadians);
+			rotationSin = MathUtils.sin(degrees * MathUtils.degreesToRadians);
+		}
+	}
+
+	/**
+	 * Rotates all corners around the rotational center
+	 * 
+	 * @param cos
+	 *            The cosine of the angle to rotate by
+	 * @param sin
+	 *            The sine of the angle to rotate by
+	 */
+	private void rotateCorners(float cos, float sin) {
+		if (sin == 0f && cos == 1f) {
 			return;
+		}
+		float centerX = rotationalCenter.x;
+		float centerY = rotationalCenter.y;
+		rotateCorner(topLeft, cos, sin, centerX, centerY);
+		rotateCorner(topRight, cos, sin, centerX, centerY);
+		rotateCorner(bottomLeft, cos, sin, centerX, centerY);
+		rotateCorner(bottomRight, cos, sin, centerX, centerY);
+		rotateCorner(this.center, cos, sin, centerX, centerY);
+		x = topLeft.x;
+		y = topLeft.y;
+	}
 
-		topRight.rotateAround(rotationalCenter, degrees);
-		bottomLeft.rotateAround(rotationalCenter, degrees);
-		bottomRight.rotateAround(rotationalCenter, degrees);
-		this.center.rotateAround(rotationalCenter, degrees);
+	private static void rotateCorner(Point corner, float cos, float sin,
+			float centerX, float centerY) {
+		float dx = corner.x - centerX;
+		float dy = corner.y - centerY;
+		setCorner(corner, (cos * dx) - (sin * dy) + centerX, (sin * dx)
+				+ (cos * dy) + centerY);
+	}
 
-		if (!rotationalCenter.equals(topLeft)) {
-			topLeft.rotateAround(rotationalCenter, degrees);
-		}
-		super.setX(topLeft.x);
-		super.setY(topLeft.y);
+	/**
+	 * Undoes the current rotation so that the unrotated x, y, width and
+	 * height can be modified
+	 */
+	private void beginTransform() {
+		rotateCorners(rotationCos, -rotationSin);
+	}
+
+	/**
+	 * Rebuilds the corners from the unrotated x, y, width and height,
+	 * re-applies the current rotation and notifies listeners once
+	 */
+	private void endTransform() {
+		recalculateCoordinates();
+		rotateCorners(rotationCos, rotationSin);
+		recalculateMinMax();
+		notifyPositionChangeListeners();
+	}
+
+	/**
+	 * Returns if a change of position can be applied as a single translation
+	 * of all corners, i.e. this {@link Rectangle} is rotated around its own
+	 * top-left corner
+	 */
+	private boolean isTranslatable() {
+		return rotation != 0f && rotationalCenter == topLeft;
+	}
+
+	/**
+	 * Moves every corner by the same amount and notifies listeners once
+	 * 
+	 * @param dx
+	 *            The amount to move along the x axis
+	 * @param dy
+	 *            The amount to move along the y axis
+	 */
+	private void translate(float dx, float dy) {
+		translateCorner(topLeft, dx, dy);
+		translateCorner(topRight, dx, dy);
+		translateCorner(bottomLeft, dx, dy);
+		translateCorner(bottomRight, dx, dy);
+		translateCorner(center, dx, dy);
+		x = topLeft.x;
+		y = topLeft.y;
+		minX += dx;
+		minY += dy;
+		maxX += dx;
+		maxY += dy;
+		notifyPositionChangeListeners();
+	}
+
+	private static void translateCorner(Point corner, float dx, float dy) {
+		setCorner(corner, corner.x + dx, corner.y + dy);
 	}
 
 	/**
@@ -266,26 +391,157 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 	}
 
 	/**
-	 * Returns if the specified {@link Rectangle} intersects this one
+	 * Returns how far along a {@link LineSegment} it first touches this
+	 * {@link Rectangle}
+	 *
+	 * @param lineSegment
+	 *            The {@link LineSegment} to test
+	 * @return A value between 0 (point A) and 1 (point B), 0 if point A is
+	 *         inside this {@link Rectangle} or -1 if the {@link LineSegment}
+	 *         does not touch this {@link Rectangle}
+	 */
+	public float getLineSegmentEntryFraction(LineSegment lineSegment) {
+		float startX = lineSegment.getPointA().x;
+		float startY = lineSegment.getPointA().y;
+		float deltaX = lineSegment.getPointB().x - startX;
+		float deltaY = lineSegment.getPointB().y - startY;
+		float centerX = (topLeft.x + bottomRight.x) / 2f;
+		float centerY = (topLeft.y + bottomRight.y) / 2f;
+
+		float entry = 0f;
+		float exit = 1f;
+		for (int i = 0; i < 4; i++) {
+			Point edgeStart = getCorner(i);
+			Point edgeEnd = getCorner((i + 1) % 4);
+			float normalX = edgeEnd.y - edgeStart.y;
+			float normalY = edgeStart.x - edgeEnd.x;
+			if ((centerX - edgeStart.x) * normalX + (centerY - edgeStart.y)
+					* normalY > 0f) {
+				normalX = -normalX;
+				normalY = -normalY;
+			}
+			float numerator = (startX - edgeStart.x) * normalX
+					+ (startY - edgeStart.y) * normalY;
+			float denominator = deltaX * normalX + deltaY * normalY;
+			if (denominator == 0f) {
+				if (numerator > 0f) {
+					return -1f;
+				}
+				continue;
+			}
+			float fraction = -numerator / denominator;
+			if (denominator < 0f) {
+				entry = Math.max(entry, fraction);
+			} else {
+				exit = Math.min(exit, fraction);
+			}
+			if (entry > exit) {
+				return -1f;
+			}
+		}
+		return entry;
+	}
+
+	private Point getCorner(int index) {
+		switch (index) {
+		case 0:
+			return topLeft;
+		case 1:
+			return topRight;
+		case 2:
+			return bottomRight;
+		default:
+			return bottomLeft;
+		}
+	}
+
+	/**
+	 * Returns if the specified {@link Rectangle} intersects this one. Rotated
+	 * {@link Rectangle}s are tested exactly using the separating axis theorem.
 	 * 
 	 * @param rectangle
 	 *            The {@link Rectangle} to test for intersection
 	 * @return True if the {@link Rectangle}s intersect
 	 */
 	public boolean intersects(Rectangle rectangle) {
-		boolean xAxisOverlaps = true;
-		boolean yAxisOverlaps = true;
+		return intersects(rectangle, null);
+	}
 
-		if (maxX < rectangle.getMinX())
-			xAxisOverlaps = false;
-		if (rectangle.getMaxX() < minX)
-			xAxisOverlaps = false;
-		if (maxY < rectangle.getMinY())
-			yAxisOverlaps = false;
-		if (rectangle.getMaxY() < minY)
-			yAxisOverlaps = false;
+	/**
+	 * Returns if the specified {@link Rectangle} intersects this one and
+	 * computes the minimum translation required to separate them
+	 * 
+	 * @param rectangle
+	 *            The {@link Rectangle} to test for intersection
+	 * @param mtv
+	 *            The {@link MinimumTranslationVector} to store the result in.
+	 *            Its normal points away from rectangle so that moving this
+	 *            {@link Rectangle} by normal * depth separates the two. May
+	 *            be null.
+	 * @return True if the {@link Rectangle}s intersect
+	 */
+	public boolean intersects(Rectangle rectangle,
+			MinimumTranslationVector mtv) {
+		if (!intersectsBounds(rectangle.minX, rectangle.minY,
+				rectangle.maxX, rectangle.maxY)) {
+			return false;
+		}
+		if (mtv == null && rotation == 0f && rectangle.rotation == 0f) {
+			return true;
+		}
 
-		return xAxisOverlaps && yAxisOverlaps;
+		float depth = Float.MAX_VALUE;
+		float normalX = 0f;
+		float normalY = 0f;
+		for (int i = 0; i < 4; i++) {
+			Rectangle owner = i < 2 ? this : rectangle;
+			Point axisEnd = i % 2 == 0 ? owner.topRight : owner.bottomLeft;
+			float axisX = axisEnd.x - owner.topLeft.x;
+			float axisY = axisEnd.y - owner.topLeft.y;
+			float length = (float) Math.sqrt((axisX * axisX)
+					+ (axisY * axisY));
+			if (length == 0f) {
+				continue;
+			}
+			axisX /= length;
+			axisY /= length;
+
+			float thisMin = Float.MAX_VALUE, thisMax = -Float.MAX_VALUE;
+			float otherMin = Float.MAX_VALUE, otherMax = -Float.MAX_VALUE;
+			for (int j = 0; j < 4; j++) {
+				Point corner = getCorner(j);
+				float projection = (corner.x * axisX) + (corner.y * axisY);
+				thisMin = Math.min(thisMin, projection);
+				thisMax = Math.max(thisMax, projection);
+
+				corner = rectangle.getCorner(j);
+				projection = (corner.x * axisX) + (corner.y * axisY);
+				otherMin = Math.min(otherMin, projection);
+				otherMax = Math.max(otherMax, projection);
+			}
+			if (thisMax < otherMin || otherMax < thisMin) {
+				return false;
+			}
+			float overlap = Math.min(thisMax - otherMin, otherMax - thisMin);
+			if (overlap < depth) {
+				depth = overlap;
+				normalX = axisX;
+				normalY = axisY;
+			}
+		}
+		if (mtv != null) {
+			if (depth == Float.MAX_VALUE) {
+				depth = 0f;
+			}
+			if (((center.x - rectangle.center.x) * normalX)
+					+ ((center.y - rectangle.center.y) * normalY) < 0f) {
+				normalX = -normalX;
+				normalY = -normalY;
+			}
+			mtv.normal.set(normalX, normalY);
+			mtv.depth = depth;
+		}
+		return true;
 	}
 
 	@Override
@@ -301,13 +557,10 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 	public boolean intersects(Parallelogram parallelogram) {
 		if (parallelogram instanceof Rectangle) {
 			return intersects((Rectangle) parallelogram);
-		} else {
-			Rectangle rect = new Rectangle(parallelogram.getX(),
-					parallelogram.getY(), parallelogram.getWidth(),
-					parallelogram.getHeight());
-			rect.rotate(parallelogram.getRotation());
-			return intersects(rect);
 		}
+		return intersectsBounds(parallelogram.getMinX(),
+				parallelogram.getMinY(), parallelogram.getMaxX(),
+				parallelogram.getMaxY());
 	}
 
 	/**
@@ -315,8 +568,13 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 	 */
 	@Override
 	public boolean intersects(float x, float y, float width, float height) {
-		Rectangle rect = new Rectangle(x, y, width, height);
-		return intersects(rect);
+		return intersectsBounds(x, y, x + width, y + height);
+	}
+
+	private boolean intersectsBounds(float otherMinX, float otherMinY,
+			float otherMaxX, float otherMaxY) {
+		return maxX >= otherMinX && otherMaxX >= minX && maxY >= otherMinY
+				&& otherMaxY >= minY;
 	}
 
 	public Rectangle intersection(Rectangle rect) {
@@ -338,13 +596,24 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 	public boolean contains(Parallelogram parallelogram) {
 		if (parallelogram instanceof Rectangle) {
 			return contains((Rectangle) parallelogram);
-		} else {
-			Rectangle rect = new Rectangle(parallelogram.getX(),
-					parallelogram.getY(), parallelogram.getWidth(),
-					parallelogram.getHeight());
-			rect.rotate(parallelogram.getRotation());
-			return contains(rect);
 		}
+		float x = parallelogram.getX();
+		float y = parallelogram.getY();
+		float width = parallelogram.getWidth();
+		float height = parallelogram.getHeight();
+		float rotation = parallelogram.getRotation();
+		if (rotation == 0f) {
+			return contains(x, y) && contains(x + width, y)
+					&& contains(x, y + height)
+					&& contains(x + width, y + height);
+		}
+		float cos = MathUtils.cos(rotation * MathUtils.degreesToRadians);
+		float sin = MathUtils.sin(rotation * MathUtils.degreesToRadians);
+		return contains(x, y)
+				&& contains(x + (width * cos), y + (width * sin))
+				&& contains(x - (height * sin), y + (height * cos))
+				&& contains(x + (width * cos) - (height * sin), y
+						+ (width * sin) + (height * cos));
 	}
 
 	/**
@@ -420,121 +689,104 @@ public class Rectangle extends com.badlogic.gdx.math.Rectangle implements
 
 	@Override
 	public Rectangle set(float x, float y, float width, float height) {
-		performRotation(-rotation);
+		beginTransform();
 		super.set(x, y, width, height);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 		return this;
 	}
 
 	public void set(Rectangle rectangle) {
-		performRotation(-rotation);
+		beginTransform();
 		super.set(rectangle);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 	}
 
 	@Override
 	public com.badlogic.gdx.math.Rectangle set(
 			com.badlogic.gdx.math.Rectangle rectangle) {
-		performRotation(-rotation);
+		beginTransform();
 		super.set(rectangle);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 		return this;
 	}
 
 	@Override
 	public Rectangle setPosition(float x, float y) {
-		performRotation(-rotation);
+		if (isTranslatable()) {
+			translate(x - this.x, y - this.y);
+			return this;
+		}
+		beginTransform();
 		super.setPosition(x, y);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 		return this;
 	}
 
 	@Override
 	public Rectangle setPosition(Vector2 position) {
-		performRotation(-rotation);
+		if (isTranslatable()) {
+			translate(position.x - x, position.y - y);
+			return this;
+		}
+		beginTransform();
 		super.setPosition(position);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 		return this;
 	}
 
 	@Override
 	public Rectangle setX(float x) {
-		performRotation(-rotation);
+		if (isTranslatable()) {
+			translate(x - this.x, 0f);
+			return this;
+		}
+		beginTransform();
 		super.setX(x);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 		return this;
 	}
 
 	@Override
 	public Rectangle setY(float y) {
-		performRotation(-rotation);
+		if (isTranslatable()) {
+			translate(0f, y - this.y);
+			return this;
+		}
+		beginTransform();
 		super.setY(y);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 		return this;
 	}
 
 	@Override
 	public Rectangle setWidth(float width) {
-		performRotation(-rotation);
+		beginTransform();
 		super.setWidth(width);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 		return this;
 	}
 
 	@Override
 	public Rectangle setHeight(float height) {
-		performRotation(-rotation);
+		beginTransform();
 		super.setHeight(height);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 		return this;
 	}
 
 	@Override
 	public Rectangle setSize(float width, float height) {
-		performRotation(-rotation);
+		beginTransform();
 		super.setSize(width, height);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 		return this;
 	}
 
 	@Override
 	public Rectangle setSize(float sizeXY) {
-		performRotation(-rotation);
+		beginTransform();
 		super.setSize(sizeXY);
-		recalculateCoordinates();
-		performRotation(rotation);
-		recalculateMinMax();
-		notifyPositionChangeListeners();
+		endTransform();
 		return this;
 	}
 
@@ -41,7 +41,8 @@ public class Graphics {
 	private ShapeRenderer shapeRenderer;
 	private OrthographicCamera camera;
 	private BitmapFont font;
-	private ShaderProgram defaultShader;
+	private ShaderProgram defaultShader, currentShader;
+	private final GraphicsStatistics statistics = new GraphicsStatistics();
 
 	private float translationX, translationY;
 	private float scaleX, scaleY;
@@ -50,9 +51,18 @@ public class Graphics {
 
 	private int defaultBlendSrcFunc = GL20.GL_SRC_ALPHA,
 			defaultBlendDstFunc = GL20.GL_ONE_MINUS_SRC_ALPHA;
+	private int blendSrcFunc = defaultBlendSrcFunc,
+			blendDstFunc = defaultBlendDstFunc;
 	private int lineHeight;
-	private boolean rendering, renderingShapes;
+	private boolean rendering;
+	private ShapeType shapeType;
 	private Rectangle clip;
+	private Rectangle[] clipStack = new Rectangle[4], clipPool = new Rectangle[4];
+	private int clipStackSize;
+	private boolean clipApplied, scissorApplied;
+	private final Vector3 tmpVector = new Vector3();
+	private float appliedClipX, appliedClipY, appliedClipWidth,
+			appliedClipHeight, appliedClipRotation;
 
 	public Graphics(SpriteBatch spriteBatch, ShapeRenderer shapeRenderer) {
 		this.spriteBatch = spriteBatch;
@@ -94,9 +104,11 @@ public class Graphics {
 
 		Gdx.gl.glClearColor(backgroundColor.r, backgroundColor.g,
 				backgroundColor.b, backgroundColor.a);
-		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT | GL20.GL_STENCIL_BUFFER_BIT);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
 		rendering = false;
+		statistics.clear();
+		colorTextureCache.beginFrame();
 		
 		if(defaultShader == null) {
 			defaultShader = SpriteBatch.createDefaultShader();
@@ -127,16 +139,25 @@ public class Graphics {
 	 *            Y coordinate of point B
 	 */
 	public void drawLineSegment(float x1, float y1, float x2, float y2) {
-		beginRendering();
-		endRendering();
-
-		/* TODO: Move all shape rendering over to using ShapeRenderer */
-		renderingShapes = true;
-		shapeRenderer.begin(ShapeType.Line);
+		beginShapeRendering(ShapeType.Line);
 		shapeRenderer.setColor(color);
 		shapeRenderer.line(x1, y1, x2, y2);
+		statistics.shapesSubmitted++;
+	}
 
-		beginRendering();
+	/**
+	 * Renders the outline of a polygon to the window in the current
+	 * {@link Color}
+	 * 
+	 * @param vertices
+	 *            The x,y pairs of each vertex. Must contain at least 3
+	 *            vertices.
+	 */
+	public void drawPolygon(float[] vertices) {
+		beginShapeRendering(ShapeType.Line);
+		shapeRenderer.setColor(color);
+		shapeRenderer.polygon(vertices);
+		statistics.shapesSubmitted++;
 	}
 
 	/**
@@ -160,8 +181,8 @@ public class Graphics {
 
 		spriteBatch.draw(colorTextureCache.getRectangleTexture(color,
 				roundWidth, roundHeight, getLineHeight()), x, y, 0, 0,
-				roundWidth, roundHeight, 1f, 1f, 0, 0, 0, roundWidth,
-				roundHeight, false, false);
+				roundWidth, roundHeight, 1f, 1f, 0);
+		statistics.spritesSubmitted++;
 	}
 
 	/**
@@ -180,7 +201,8 @@ public class Graphics {
 		beginRendering();
 
 		spriteBatch.draw(colorTextureCache.getFilledRectangleTexture(color), x,
-				y, 0, 0, width, height, 1f, 1f, 0, 0, 0, 1, 1, false, false);
+				y, 0, 0, width, height, 1f, 1f, 0);
+		statistics.spritesSubmitted++;
 	}
 
 	/**
@@ -200,11 +222,11 @@ public class Graphics {
 		float renderX = (centerX - radius);
 		float renderY = (centerY - radius);
 
-		Texture texture = colorTextureCache.getCircleTexture(color, radius,
-				getLineHeight());
-		spriteBatch.draw(texture, renderX, renderY, 0, 0, texture.getWidth(),
-				texture.getHeight(), 1f, 1f, 0, 0, 0, texture.getWidth(),
-				texture.getHeight(), false, false);
+		TextureRegion region = colorTextureCache.getCircleTexture(color,
+				radius, getLineHeight());
+		spriteBatch.draw(region, renderX, renderY, 0, 0,
+				region.getRegionWidth(), region.getRegionHeight(), 1f, 1f, 0);
+		statistics.spritesSubmitted++;
 	}
 
 	/**
@@ -218,16 +240,16 @@ public class Graphics {
 	 *            The radius of the circle
 	 */
 	public void fillCircle(float centerX, float centerY, int radius) {
-		Texture texture = colorTextureCache.getFilledCircleTexture(color,
-				radius);
+		TextureRegion region = colorTextureCache.getFilledCircleTexture(
+				color, radius);
 
 		float renderX = (centerX - radius);
 		float renderY = (centerY - radius);
 
 		beginRendering();
-		spriteBatch.draw(texture, renderX, renderY, 0, 0, texture.getWidth(),
-				texture.getHeight(), 1f, 1f, 0, 0, 0, texture.getWidth(),
-				texture.getHeight(), false, false);
+		spriteBatch.draw(region, renderX, renderY, 0, 0,
+				region.getRegionWidth(), region.getRegionHeight(), 1f, 1f, 0);
+		statistics.spritesSubmitted++;
 	}
 
 	/**
@@ -283,6 +305,7 @@ public class Graphics {
 		spriteBatch.draw(texture, x, y, 0, 0, texture.getWidth(),
 				texture.getHeight(), 1f, 1f, 0, 0, 0, texture.getWidth(),
 				texture.getHeight(), false, false);
+		statistics.spritesSubmitted++;
 	}
 
 	/**
@@ -300,6 +323,7 @@ public class Graphics {
 		spriteBatch.draw(textureRegion, x, y, 0, 0,
 				textureRegion.getRegionWidth(),
 				textureRegion.getRegionHeight(), 1f, 1f, 0);
+		statistics.spritesSubmitted++;
 	}
 
 	/**
@@ -322,6 +346,7 @@ public class Graphics {
 	public void drawSprite(Sprite sprite) {
 		beginRendering();
 		sprite.draw(spriteBatch);
+		statistics.spritesSubmitted++;
 	}
 
 	/**
@@ -347,6 +372,7 @@ public class Graphics {
 		sprite.draw(spriteBatch);
 		sprite.setPosition(oldX, oldY);
 		sprite.setColor(oldTint);
+		statistics.spritesSubmitted++;
 	}
 
 	public void drawSpriteCache(SpriteCache spriteCache, int cacheId) {
@@ -373,6 +399,13 @@ public class Graphics {
 	 *            The y coordinate to rotate around
 	 */
 	public void rotate(float degrees, float x, float y) {
+		if (degrees == 0f
+				&& (rotation == 0f || (x == rotationX && y == rotationY))) {
+			this.rotationX = x;
+			this.rotationY = y;
+			statistics.redundantStateChanges++;
+			return;
+		}
 		if (rendering) {
 			endRendering();
 		}
@@ -392,6 +425,10 @@ public class Graphics {
 	 *            Scaling along the Y axos
 	 */
 	public void scale(float scaleX, float scaleY) {
+		if (scaleX == 1f && scaleY == 1f) {
+			statistics.redundantStateChanges++;
+			return;
+		}
 		if (rendering) {
 			endRendering();
 		}
@@ -409,6 +446,10 @@ public class Graphics {
 	 *            The y axis translation
 	 */
 	public void translate(float translateX, float translateY) {
+		if (translateX == 0f && translateY == 0f) {
+			statistics.redundantStateChanges++;
+			return;
+		}
 		if (rendering) {
 			endRendering();
 		}
@@ -431,10 +472,28 @@ public class Graphics {
 	 *            The height of the clip
 	 */
 	public void setClip(float x, float y, float width, float height) {
+		if (isClipApplied(x, y, width, height, 0f)) {
+			statistics.redundantStateChanges++;
+			updateClip(x, y, width, height);
+			return;
+		}
 		if (rendering) {
 			endRendering();
 		}
 
+		updateClip(x, y, width, height);
+	}
+
+	/**
+	 * Keeps the current clip instance if it already covers the area so that
+	 * setting the same clip each frame does not allocate
+	 */
+	private void updateClip(float x, float y, float width, float height) {
+		if (clip != null && clip.getRotation() == 0f && clip.getX() == x
+				&& clip.getY() == y && clip.getWidth() == width
+				&& clip.getHeight() == height) {
+			return;
+		}
 		clip = new Rectangle(x, y, width, height);
 	}
 
@@ -446,6 +505,13 @@ public class Graphics {
 	 *            The clip area
 	 */
 	public void setClip(Rectangle clip) {
+		if (clip == null ? !clipApplied : isClipApplied(clip.getX(),
+				clip.getY(), clip.getWidth(), clip.getHeight(),
+				clip.getRotation())) {
+			statistics.redundantStateChanges++;
+			this.clip = clip;
+			return;
+		}
 		if (rendering) {
 			endRendering();
 		}
@@ -457,7 +523,7 @@ public class Graphics {
 	 * Removes the applied clip
 	 */
 	public Rectangle removeClip() {
-		if (rendering) {
+		if (rendering && clipApplied) {
 			endRendering();
 		}
 
@@ -466,6 +532,114 @@ public class Graphics {
 		return result;
 	}
 
+	/**
+	 * Returns the clip currently applied
+	 * 
+	 * @return Null if no clip is applied
+	 */
+	public Rectangle getClip() {
+		return clip;
+	}
+
+	/**
+	 * Intersects the current clip with the specified area until
+	 * {@link #popClip()} is called. Rendering is only restarted if the
+	 * resulting clip differs from the one in use.
+	 * 
+	 * Note: If the current clip is rotated, its axis-aligned bounds are used
+	 * for the intersection
+	 * 
+	 * @param x
+	 *            The x coordinate the clip begins at
+	 * @param y
+	 *            The y coordinate the clip begins at
+	 * @param width
+	 *            The width of the clip
+	 * @param height
+	 *            The height of the clip
+	 */
+	public void pushClip(float x, float y, float width, float height) {
+		Rectangle result = pushClipState();
+		if (clip == null) {
+			result.set(x, y, width, height);
+		} else {
+			float minX = Math.max(x, clip.getMinX());
+			float minY = Math.max(y, clip.getMinY());
+			float maxX = Math.min(x + width, clip.getMaxX());
+			float maxY = Math.min(y + height, clip.getMaxY());
+			result.set(minX, minY, Math.max(0f, maxX - minX),
+					Math.max(0f, maxY - minY));
+		}
+		setClip(result);
+	}
+
+	/**
+	 * Intersects the current clip with the specified area until
+	 * {@link #popClip()} is called. A rotated area is only used as-is when no
+	 * clip is currently set, otherwise its axis-aligned bounds are used.
+	 * 
+	 * @param clip
+	 *            The clip area
+	 */
+	public void pushClip(Rectangle clip) {
+		if (this.clip == null && clip.getRotation() != 0f) {
+			pushClipState();
+			setClip(clip);
+			return;
+		}
+		pushClip(clip.getMinX(), clip.getMinY(),
+				clip.getMaxX() - clip.getMinX(),
+				clip.getMaxY() - clip.getMinY());
+	}
+
+	/**
+	 * Restores the clip that was set before the matching call to
+	 * {@link #pushClip(float, float, float, float)}
+	 */
+	public void popClip() {
+		if (clipStackSize == 0) {
+			throw new IllegalStateException(
+					"popClip() called without a matching pushClip()");
+		}
+		clipStackSize--;
+		Rectangle previous = clipStack[clipStackSize];
+		clipStack[clipStackSize] = null;
+		setClip(previous);
+	}
+
+	/**
+	 * Saves the current clip and returns a pooled {@link Rectangle} to store
+	 * the new clip in
+	 */
+	private Rectangle pushClipState() {
+		if (clipStackSize == clipStack.length) {
+			Rectangle[] stack = new Rectangle[clipStackSize * 2];
+			System.arraycopy(clipStack, 0, stack, 0, clipStackSize);
+			clipStack = stack;
+			Rectangle[] pool = new Rectangle[clipStackSize * 2];
+			System.arraycopy(clipPool, 0, pool, 0, clipStackSize);
+			clipPool = pool;
+		}
+		clipStack[clipStackSize] = clip;
+		Rectangle result = clipPool[clipStackSize];
+		if (result == null) {
+			result = new Rectangle();
+			clipPool[clipStackSize] = result;
+		}
+		clipStackSize++;
+		return result;
+	}
+
+	/**
+	 * Returns the number of clips pushed with
+	 * {@link #pushClip(float, float, float, float)} that have not been popped
+	 * 
+	 * @return 0 if no clips have been pushed
+	 */
+	public int getClipDepth() {
+		return clipStackSize;
+	}
+
 	/**
 	 * Sets the {@link Color} to apply to draw operations
 	 * 
@@ -473,6 +647,11 @@ public class Graphics {
 	 *            The {@link Color} to tint with
 	 */
 	public void setTint(Color tint) {
+		if (tint != null && tint.toFloatBits() == spriteBatch.getPackedColor()) {
+			statistics.redundantStateChanges++;
+			this.tint = tint;
+			return;
+		}
 		if (rendering) {
 			endRendering();
 		}
@@ -489,6 +668,10 @@ public class Graphics {
 	 */
 	public void setFont(BitmapFont font) {
 		if (font != null) {
+			if (font == this.font) {
+				statistics.redundantStateChanges++;
+				return;
+			}
 			if (rendering) {
 				endRendering();
 			}
@@ -523,14 +706,20 @@ public class Graphics {
 	 * @param shaderProgram The {@link ShaderProgram} to apply
 	 */
 	public void setShaderProgram(ShaderProgram shaderProgram) {
+		if (shaderProgram != null && shaderProgram == currentShader) {
+			statistics.redundantStateChanges++;
+			return;
+		}
 		spriteBatch.setShader(shaderProgram);
+		currentShader = shaderProgram;
+		statistics.shaderSwitches++;
 	}
 	
 	/**
 	 * Clears the {@link ShaderProgram} applied to this instance
 	 */
 	public void clearShaderProgram() {
-		spriteBatch.setShader(defaultShader);
+		setShaderProgram(defaultShader);
 	}
 
 	/**
@@ -546,14 +735,21 @@ public class Graphics {
 	 *            Destination GL function
 	 */
 	public void setBlendFunction(int srcFunc, int dstFunc) {
+		if (srcFunc == blendSrcFunc && dstFunc == blendDstFunc) {
+			statistics.redundantStateChanges++;
+			return;
+		}
 		spriteBatch.setBlendFunction(srcFunc, dstFunc);
+		blendSrcFunc = srcFunc;
+		blendDstFunc = dstFunc;
+		statistics.blendFunctionSwitches++;
 	}
 	
 	/**
 	 * Resets the blend function to its default
 	 */
 	public void clearBlendFunction() {
-		spriteBatch.setBlendFunction(defaultBlendSrcFunc, defaultBlendDstFunc);
+		setBlendFunction(defaultBlendSrcFunc, defaultBlendDstFunc);
 	}
 
 	/**
@@ -561,43 +757,136 @@ public class Graphics {
 	 * of rendering
 	 */
 	public void flush() {
-		spriteBatch.flush();
+		if (shapeType != null) {
+			shapeRenderer.flush();
+		} else {
+			spriteBatch.flush();
+		}
 	}
 
 	/**
 	 * This method allows for translation, scaling, etc. to be set before the
-	 * {@link SpriteBatch} begins
+	 * {@link SpriteBatch} begins. If shapes are being batched, they are
+	 * flushed first.
 	 */
 	private void beginRendering() {
 		if (!rendering) {
-			applyTransformations();
-			spriteBatch.begin();
-			Gdx.gl.glClearStencil(0);
-			Gdx.gl.glClear(GL20.GL_STENCIL_BUFFER_BIT);
-			if (clip != null) {
-				Gdx.gl.glEnable(GL20.GL_STENCIL_TEST);
-				Gdx.gl.glColorMask(false, false, false, false);
-				Gdx.gl.glDepthMask(false);
-				Gdx.gl.glStencilFunc(GL20.GL_ALWAYS, 1, 1);
-				Gdx.gl.glStencilOp(GL20.GL_REPLACE, GL20.GL_REPLACE,
-						GL20.GL_REPLACE);
-
-				spriteBatch.draw(colorTextureCache
-						.getFilledRectangleTexture(Color.WHITE), clip.getX(),
-						clip.getY(), 0f, 0f, clip.getWidth(), clip.getHeight(),
-						1f, 1f, 0, 0, 0, 1, 1, false, false);
-				spriteBatch.end();
-
-				Gdx.gl.glColorMask(true, true, true, true);
-				Gdx.gl.glDepthMask(true);
-				Gdx.gl.glStencilFunc(GL20.GL_EQUAL, 1, 1);
-				Gdx.gl.glStencilOp(GL20.GL_KEEP, GL20.GL_KEEP, GL20.GL_KEEP);
-
-				spriteBatch.begin();
-			}
+			beginSession();
+			beginSpriteBatch();
+		} else if (shapeType != null) {
+			shapeRenderer.end();
+			shapeType = null;
+			beginSpriteBatch();
+		}
+	}
 
-			rendering = true;
+	/**
+	 * Switches to batching shapes of the specified type with the
+	 * {@link ShapeRenderer}. Consecutive shapes of the same type are
+	 * accumulated and drawn together.
+	 * 
+	 * @param type
+	 *            The {@link ShapeType} to be drawn
+	 */
+	private void beginShapeRendering(ShapeType type) {
+		if (!rendering) {
+			beginSession();
+			shapeRenderer.begin(type);
+			statistics.shapeRendererBegins++;
+		} else if (shapeType == null) {
+			endSpriteBatch();
+			shapeRenderer.begin(type);
+			statistics.shapeRendererBegins++;
+		} else if (shapeType != type) {
+			shapeRenderer.set(type);
 		}
+		shapeType = type;
+	}
+
+	private void beginSpriteBatch() {
+		spriteBatch.begin();
+		statistics.spriteBatchBegins++;
+	}
+
+	private void endSpriteBatch() {
+		spriteBatch.end();
+		statistics.renderCalls += spriteBatch.renderCalls;
+	}
+
+	/**
+	 * Applies transformations and the clip before either batch begins
+	 */
+	private void beginSession() {
+		applyTransformations();
+		clipApplied = clip != null;
+		scissorApplied = false;
+		if (clip != null) {
+			appliedClipX = clip.getX();
+			appliedClipY = clip.getY();
+			appliedClipWidth = clip.getWidth();
+			appliedClipHeight = clip.getHeight();
+			appliedClipRotation = clip.getRotation();
+
+			if (appliedClipRotation == 0f && rotation == 0f) {
+				applyScissor();
+			} else {
+				applyStencil();
+			}
+		}
+		rendering = true;
+	}
+
+	/**
+	 * Clips to an axis-aligned area using the scissor test, which avoids
+	 * clearing and drawing into the stencil buffer
+	 */
+	private void applyScissor() {
+		tmpVector.set(appliedClipX, appliedClipY, 0f);
+		camera.project(tmpVector, 0f, 0f, currentWidth, currentHeight);
+		float x1 = tmpVector.x;
+		float y1 = tmpVector.y;
+		tmpVector.set(appliedClipX + appliedClipWidth, appliedClipY
+				+ appliedClipHeight, 0f);
+		camera.project(tmpVector, 0f, 0f, currentWidth, currentHeight);
+		float x2 = tmpVector.x;
+		float y2 = tmpVector.y;
+
+		int scissorX = MathUtils.floor(Math.min(x1, x2));
+		int scissorY = MathUtils.floor(Math.min(y1, y2));
+		int scissorWidth = MathUtils.ceil(Math.max(x1, x2)) - scissorX;
+		int scissorHeight = MathUtils.ceil(Math.max(y1, y2)) - scissorY;
+
+		Gdx.gl.glEnable(GL20.GL_SCISSOR_TEST);
+		Gdx.gl.glScissor(scissorX, scissorY, Math.max(0, scissorWidth),
+				Math.max(0, scissorHeight));
+		scissorApplied = true;
+	}
+
+	/**
+	 * Clips to a rotated area by drawing it into the stencil buffer
+	 */
+	private void applyStencil() {
+		Gdx.gl.glClearStencil(0);
+		Gdx.gl.glClear(GL20.GL_STENCIL_BUFFER_BIT);
+		statistics.stencilClears++;
+
+		Gdx.gl.glEnable(GL20.GL_STENCIL_TEST);
+		Gdx.gl.glColorMask(false, false, false, false);
+		Gdx.gl.glDepthMask(false);
+		Gdx.gl.glStencilFunc(GL20.GL_ALWAYS, 1, 1);
+		Gdx.gl.glStencilOp(GL20.GL_REPLACE, GL20.GL_REPLACE, GL20.GL_REPLACE);
+
+		beginSpriteBatch();
+		spriteBatch.draw(
+				colorTextureCache.getFilledRectangleTexture(Color.WHITE),
+				appliedClipX, appliedClipY, 0f, 0f, appliedClipWidth,
+				appliedClipHeight, 1f, 1f, appliedClipRotation);
+		endSpriteBatch();
+
+		Gdx.gl.glColorMask(true, true, true, true);
+		Gdx.gl.glDepthMask(true);
+		Gdx.gl.glStencilFunc(GL20.GL_EQUAL, 1, 1);
+		Gdx.gl.glStencilOp(GL20.GL_KEEP, GL20.GL_KEEP, GL20.GL_KEEP);
 	}
 
 	/**
@@ -606,17 +895,37 @@ public class Graphics {
 	private void endRendering() {
 		if (rendering) {
 			undoTransformations();
-			spriteBatch.end();
-			if (renderingShapes) {
+			if (shapeType != null) {
 				shapeRenderer.end();
+			} else {
+				endSpriteBatch();
 			}
 
-			if (clip != null) {
+			if (scissorApplied) {
+				Gdx.gl.glDisable(GL20.GL_SCISSOR_TEST);
+			} else if (clipApplied) {
 				Gdx.gl.glDisable(GL20.GL_STENCIL_TEST);
 			}
 		}
 		rendering = false;
-		renderingShapes = false;
+		clipApplied = false;
+		scissorApplied = false;
+		shapeType = null;
+	}
+
+	/**
+	 * Returns if the current rendering session already uses the specified
+	 * clip, in which case changing to it does not need to end rendering
+	 */
+	private boolean isClipApplied(float x, float y, float width,
+			float height, float rotation) {
+		if (!rendering) {
+			return false;
+		}
+		return clipApplied && rotation == appliedClipRotation
+				&& x == appliedClipX
+				&& y == appliedClipY && width == appliedClipWidth
+				&& height == appliedClipHeight;
 	}
 
 	/**
@@ -779,6 +1088,16 @@ public class Graphics {
 		return camera.combined.cpy();
 	}
 
+	/**
+	 * Returns the counters for the current frame. These are cleared at the
+	 * start of each frame.
+	 * 
+	 * @return A non-null {@link GraphicsStatistics} instance
+	 */
+	public GraphicsStatistics getStatistics() {
+		return statistics;
+	}
+
 	public float getCurrentWidth() {
 		return currentWidth;
 	}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.graphics;
+
+/**
+ * Counts the render state changes and draw submissions made by a
+ * {@link Graphics} instance during a frame. The counters are cleared when
+ * {@link Graphics#preRender(int, int)} is called, so after
+ * {@link Graphics#postRender()} they describe the whole frame.
+ */
+public class GraphicsStatistics {
+	int spriteBatchBegins, shapeRendererBegins, renderCalls;
+	int stencilClears, shaderSwitches, blendFunctionSwitches;
+	int spritesSubmitted, shapesSubmitted, redundantStateChanges;
+
+	void clear() {
+		spriteBatchBegins = 0;
+		shapeRendererBegins = 0;
+		renderCalls = 0;
+		stencilClears = 0;
+		shaderSwitches = 0;
+		blendFunctionSwitches = 0;
+		spritesSubmitted = 0;
+		shapesSubmitted = 0;
+		redundantStateChanges = 0;
+	}
+
+	/**
+	 * Copies the counters of another instance into this one
+	 * 
+	 * @param statistics
+	 *            The {@link GraphicsStatistics} to copy
+	 */
+	public void set(GraphicsStatistics statistics) {
+		spriteBatchBegins = statistics.spriteBatchBegins;
+		shapeRendererBegins = statistics.shapeRendererBegins;
+		renderCalls = statistics.renderCalls;
+		stencilClears = statistics.stencilClears;
+		shaderSwitches = statistics.shaderSwitches;
+		blendFunctionSwitches = statistics.blendFunctionSwitches;
+		spritesSubmitted = statistics.spritesSubmitted;
+		shapesSubmitted = statistics.shapesSubmitted;
+		redundantStateChanges = statistics.redundantStateChanges;
+	}
+
+	/**
+	 * Returns the number of SpriteBatch begin/end pairs
+	 */
+	public int getSpriteBatchBegins() {
+		return spriteBatchBegins;
+	}
+
+	/**
+	 * Returns the number of ShapeRenderer begin/end pairs. Each pair flushes
+	 * its shapes at least once.
+	 */
+	public int getShapeRendererBegins() {
+		return shapeRendererBegins;
+	}
+
+	/**
+	 * Returns the number of times the SpriteBatch flushed to the GPU
+	 */
+	public int getRenderCalls() {
+		return renderCalls;
+	}
+
+	/**
+	 * Returns the number of times the stencil buffer was cleared
+	 */
+	public int getStencilClears() {
+		return stencilClears;
+	}
+
+	public int getShaderSwitches() {
+		return shaderSwitches;
+	}
+
+	public int getBlendFunctionSwitches() {
+		return blendFunctionSwitches;
+	}
+
+	/**
+	 * Returns the number of textures, regions and sprites submitted to the
+	 * SpriteBatch
+	 */
+	public int getSpritesSubmitted() {
+		return spritesSubmitted;
+	}
+
+	/**
+	 * Returns the number of lines and polygons submitted to the
+	 * ShapeRenderer
+	 */
+	public int getShapesSubmitted() {
+		return shapesSubmitted;
+	}
+
+	/**
+	 * Returns the number of state changes that were skipped because they
+	 * matched the current state
+	 */
+	public int getRedundantStateChanges() {
+		return redundantStateChanges;
+	}
+
+	@Override
+	public String toString() {
+		return "GraphicsStatistics [spriteBatchBegins=" + spriteBatchBegins
+				+ ", shapeRendererBegins=" + shapeRendererBegins
+				+ ", renderCalls=" + renderCalls + ", stencilClears="
+				+ stencilClears + ", shaderSwitches=" + shaderSwitches
+				+ ", blendFunctionSwitches=" + blendFunctionSwitches
+				+ ", spritesSubmitted=" + spritesSubmitted
+				+ ", shapesSubmitted=" + shapesSubmitted
+				+ ", redundantStateChanges=" + redundantStateChanges + "]";
+	}
+}
@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.graphics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.LongMap;
+
+/**
+ * Tracks the layout of the {@link ShapeTextureCache} atlas pages: shelf
+ * packing, the entry lookup, the byte budget and least recently used
+ * eviction. Textures are created and disposed by the cache through
+ * {@link #onPageCreated(Page)} and {@link #onPageRemoved(Page)}.
+ */
+class ShapeAtlas {
+	private final int pageSize;
+	private final long budget;
+	private final LongMap<Entry> entries = new LongMap<Entry>();
+	private final List<Page> pages = new ArrayList<Page>();
+	private long totalBytes;
+	private long frame;
+
+	ShapeAtlas(int pageSize, long budget) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("pageSize must be greater than 0");
+		}
+		this.pageSize = pageSize;
+		this.budget = budget;
+	}
+
+	/**
+	 * Marks the start of a new frame and evicts pages over the budget that
+	 * were not used in the previous frame
+	 */
+	void beginFrame() {
+		frame++;
+		while (totalBytes > budget) {
+			if (!evictLeastRecentlyUsed()) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the entry for a shape and marks its page as used this frame
+	 * 
+	 * @return Null if the shape has not been added
+	 */
+	Entry get(int type, int colorBits, int width, int height, int lineHeight) {
+		Entry entry = entries.get(getKey(type, colorBits, width, height,
+				lineHeight));
+		while (entry != null
+				&& !entry.matches(type, colorBits, width, height, lineHeight)) {
+			entry = entry.next;
+		}
+		if (entry != null) {
+			entry.page.lastUsedFrame = frame;
+		}
+		return entry;
+	}
+
+	/**
+	 * Allocates space for a shape's bitmap, creating and evicting pages as
+	 * required
+	 * 
+	 * @param bitmapWidth
+	 *            The width of the bitmap in pixels
+	 * @param bitmapHeight
+	 *            The height of the bitmap in pixels
+	 * @return The new entry with its page and position set
+	 */
+	Entry add(int type, int colorBits, int width, int height, int lineHeight,
+			int bitmapWidth, int bitmapHeight) {
+		Entry entry = new Entry();
+		entry.key = getKey(type, colorBits, width, height, lineHeight);
+		entry.type = type;
+		entry.colorBits = colorBits;
+		entry.width = width;
+		entry.height = height;
+		entry.lineHeight = lineHeight;
+		entry.page = allocate(bitmapWidth, bitmapHeight);
+		entry.x = entry.page.allocatedX;
+		entry.y = entry.page.allocatedY;
+		entry.page.entries.add(entry);
+		entry.page.lastUsedFrame = frame;
+		entry.next = entries.get(entry.key);
+		entries.put(entry.key, entry);
+		return entry;
+	}
+
+	/**
+	 * Removes all pages
+	 */
+	void clear() {
+		for (int i = 0; i < pages.size(); i++) {
+			onPageRemoved(pages.get(i));
+		}
+		pages.clear();
+		entries.clear();
+		totalBytes = 0;
+	}
+
+	/**
+	 * Called after a page has been created
+	 */
+	void onPageCreated(Page page) {
+	}
+
+	/**
+	 * Called after a page has been evicted or cleared
+	 */
+	void onPageRemoved(Page page) {
+	}
+
+	/**
+	 * Packs the colour into the upper 32 bits and a hash of the shape
+	 * dimensions into the lower 32 bits. Colliding shapes are chained.
+	 */
+	static long getKey(int type, int colorBits, int width, int height,
+			int lineHeight) {
+		int hash = type;
+		hash = (hash * 31) + width;
+		hash = (hash * 31) + height;
+		hash = (hash * 31) + lineHeight;
+		return ((long) colorBits << 32) | (hash & 0xFFFFFFFFL);
+	}
+
+	private Page allocate(int width, int height) {
+		for (int i = pages.size() - 1; i >= 0; i--) {
+			Page page = pages.get(i);
+			if (!page.dedicated && page.allocate(width, height)) {
+				return page;
+			}
+		}
+
+		int pageWidth = pageSize, pageHeight = pageSize;
+		boolean dedicated = width + 1 > pageSize || height + 1 > pageSize;
+		if (dedicated) {
+			pageWidth = width;
+			pageHeight = height;
+		}
+		Page page = new Page(pageWidth, pageHeight, dedicated);
+		while (totalBytes + page.getBytes() > budget) {
+			if (!evictLeastRecentlyUsed()) {
+				break;
+			}
+		}
+		pages.add(page);
+		totalBytes += page.getBytes();
+		page.allocate(width, height);
+		onPageCreated(page);
+		return page;
+	}
+
+	/**
+	 * Evicts the least recently used page that was not used this frame
+	 * 
+	 * @return False if no page could be evicted
+	 */
+	private boolean evictLeastRecentlyUsed() {
+		Page result = null;
+		for (int i = 0; i < pages.size(); i++) {
+			Page page = pages.get(i);
+			if (page.lastUsedFrame >= frame) {
+				continue;
+			}
+			if (result == null || page.lastUsedFrame < result.lastUsedFrame) {
+				result = page;
+			}
+		}
+		if (result == null) {
+			return false;
+		}
+		for (int i = 0; i < result.entries.size(); i++) {
+			removeEntry(result.entries.get(i));
+		}
+		pages.remove(result);
+		totalBytes -= result.getBytes();
+		onPageRemoved(result);
+		return true;
+	}
+
+	private void removeEntry(Entry entry) {
+		Entry head = entries.get(entry.key);
+		if (head == entry) {
+			if (entry.next == null) {
+				entries.remove(entry.key);
+			} else {
+				entries.put(entry.key, entry.next);
+			}
+			return;
+		}
+		while (head != null && head.next != entry) {
+			head = head.next;
+		}
+		if (head != null) {
+			head.next = entry.next;
+		}
+	}
+
+	long getTotalBytes() {
+		return totalBytes;
+	}
+
+	int getTotalPages() {
+		return pages.size();
+	}
+
+	int getPageSize() {
+		return pageSize;
+	}
+
+	long getBudget() {
+		return budget;
+	}
+
+	static class Entry {
+		long key;
+		int type, colorBits, width, height, lineHeight;
+		int x, y;
+		Page page;
+		TextureRegion region;
+		Entry next;
+
+		boolean matches(int type, int colorBits, int width, int height,
+				int lineHeight) {
+			return this.type == type && this.colorBits == colorBits
+					&& this.width == width && this.height == height
+					&& this.lineHeight == lineHeight;
+		}
+	}
+
+	/**
+	 * An atlas page packed in horizontal shelves. Each bitmap is followed by
+	 * a pixel of padding.
+	 */
+	static class Page {
+		final int width, height;
+		final boolean dedicated;
+		final List<Entry> entries = new ArrayList<Entry>();
+		Texture texture;
+		int shelfY, shelfHeight, cursorX;
+		int allocatedX, allocatedY;
+		long lastUsedFrame;
+
+		Page(int width, int height, boolean dedicated) {
+			this.width = width;
+			this.height = height;
+			this.dedicated = dedicated;
+		}
+
+		long getBytes() {
+			return (long) width * height * 4L;
+		}
+
+		boolean allocate(int width, int height) {
+			if (dedicated) {
+				allocatedX = 0;
+				allocatedY = 0;
+				return entries.isEmpty();
+			}
+			int paddedWidth = width + 1;
+			int paddedHeight = height + 1;
+			if (cursorX + paddedWidth > this.width
+					|| shelfY + Math.max(shelfHeight, paddedHeight) > this.height) {
+				if (shelfY + shelfHeight + paddedHeight > this.height
+						|| paddedWidth > this.width) {
+					return false;
+				}
+				shelfY += shelfHeight;
+				shelfHeight = 0;
+				cursorX = 0;
+			}
+			allocatedX = cursorX;
+			allocatedY = shelfY;
+			cursorX += paddedWidth;
+			shelfHeight = Math.max(shelfHeight, paddedHeight);
+			return true;
+		}
+	}
+}
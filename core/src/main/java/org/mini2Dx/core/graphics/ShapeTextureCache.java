@@ -11,55 +11,91 @@
  */
 package org.mini2Dx.core.graphics;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 
 /**
- * Implements a cache of textures for shapes
+ * Implements a cache of shape textures. Shapes are packed into shared atlas
+ * pages so that drawing different shapes does not switch textures. When the
+ * pages exceed the byte budget, the least recently used pages are evicted.
+ * 
+ * Pages used during the current frame are never evicted, as regions from them
+ * may still be waiting in a batch. {@link #beginFrame()} must be called at the
+ * start of each frame.
  */
 public class ShapeTextureCache {
-	private Map<Integer, Texture> filledRectangleTextures;
-	private Map<String, Texture> rectangleTextures;
-	private Map<String, Texture> circleTextures;
-	private Map<String, Texture> filledCircleTextures;
+	public static final int DEFAULT_PAGE_SIZE = 512;
+	public static final long DEFAULT_BUDGET = 4L * DEFAULT_PAGE_SIZE
+			* DEFAULT_PAGE_SIZE * 4L;
+
+	private static final int FILLED_RECTANGLE = 0;
+	private static final int RECTANGLE = 1;
+	private static final int CIRCLE = 2;
+	private static final int FILLED_CIRCLE = 3;
+
+	private final ShapeAtlas atlas;
 
 	/**
-	 * Constructor
+	 * Constructor. Uses 512x512 pages and a budget of 4 pages.
 	 */
 	public ShapeTextureCache() {
-		rectangleTextures = new HashMap<String, Texture>();
-		filledRectangleTextures = new HashMap<Integer, Texture>();
-		circleTextures = new HashMap<String, Texture>();
-		filledCircleTextures = new HashMap<String, Texture>();
+		this(DEFAULT_PAGE_SIZE, DEFAULT_BUDGET);
 	}
 
 	/**
-	 * Returns a filled rectangular texture for the provided {@link Color}
+	 * Constructor
+	 * 
+	 * @param pageSize
+	 *            The width and height of each atlas page in pixels. Shapes
+	 *            larger than this are given a page of their own.
+	 * @param budget
+	 *            The number of bytes of texture memory the pages may use
+	 *            before the least recently used are evicted
+	 */
+	public ShapeTextureCache(int pageSize, long budget) {
+		atlas = new ShapeAtlas(pageSize, budget) {
+			@Override
+			void onPageCreated(Page page) {
+				Pixmap blank = new Pixmap(page.width, page.height,
+						Pixmap.Format.RGBA8888);
+				blank.setColor(0f, 0f, 0f, 0f);
+				blank.fill();
+				page.texture = new Texture(blank);
+				blank.dispose();
+			}
+
+			@Override
+			void onPageRemoved(Page page) {
+				page.texture.dispose();
+			}
+		};
+	}
+
+	/**
+	 * Marks the start of a new frame and evicts pages over the budget that
+	 * were not used in the previous frame
+	 */
+	public void beginFrame() {
+		atlas.beginFrame();
+	}
+
+	/**
+	 * Returns a filled rectangular texture region for the provided
+	 * {@link Color}
 	 * 
 	 * @param color
 	 *            The {@link Color} to fetch a texture of
-	 * @return A new {@link Texture} if this is first time it has been
-	 *         requested, otherwise it will return a cached instance of the
-	 *         {@link Texture} for the given {@link Color}
+	 * @return A single pixel {@link TextureRegion} that can be stretched to
+	 *         any size
 	 */
-	public Texture getFilledRectangleTexture(Color color) {
-		int bits = color.toIntBits();
-		if (!filledRectangleTextures.containsKey(bits)) {
-			Pixmap pixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
-			pixmap.setColor(color);
-			pixmap.fillRectangle(0, 0, 1, 1);
-			filledRectangleTextures.put(bits, new Texture(pixmap));
-			pixmap.dispose();
-		}
-		return filledRectangleTextures.get(bits);
+	public TextureRegion getFilledRectangleTexture(Color color) {
+		return getRegion(FILLED_RECTANGLE, color, 1, 1, 0);
 	}
 
 	/**
-	 * Returns a rectangular texture for the provided {@link Color}
+	 * Returns a rectangular texture region for the provided {@link Color}
 	 * 
 	 * @param color
 	 *            The {@link Color} to fetch a texture of
@@ -69,29 +105,15 @@ public class ShapeTextureCache {
 	 *            The height of the rectangle
 	 * @param lineHeight
 	 *            The line height of the rectangle
-	 * @return A new {@link Texture} if this is first time it has been
-	 *         requested, otherwise it will return a cached instance of the
-	 *         {@link Texture} for the given {@link Color}
+	 * @return A {@link TextureRegion} of width x height pixels
 	 */
-	public Texture getRectangleTexture(Color color, int width, int height,
-			int lineHeight) {
-		int bits = color.toIntBits();
-		String key = "" + bits + "," + width + "," + height + "," + lineHeight;
-		if (!rectangleTextures.containsKey(key)) {
-			Pixmap pixmap = new Pixmap(width + 1, height + 1,
-					Pixmap.Format.RGBA8888);
-			pixmap.setColor(color);
-			for (int i = 0; i < lineHeight; i++) {
-				pixmap.drawRectangle(i, i, width - (i * 2), height - (i * 2));
-			}
-			rectangleTextures.put(key, new Texture(pixmap));
-			pixmap.dispose();
-		}
-		return rectangleTextures.get(key);
+	public TextureRegion getRectangleTexture(Color color, int width,
+			int height, int lineHeight) {
+		return getRegion(RECTANGLE, color, width, height, lineHeight);
 	}
 
 	/**
-	 * Returns a circle texture for the provided {@link Color}
+	 * Returns a circle texture region for the provided {@link Color}
 	 * 
 	 * @param color
 	 *            The {@link Color} to fetch a texture of
@@ -99,48 +121,116 @@ public class ShapeTextureCache {
 	 *            The radius of the circle
 	 * @param lineHeight
 	 *            The line height of the circle
-	 * @return A new {@link Texture} if this is first time it has been
-	 *         requested, otherwise it will return a cached instance of the
-	 *         {@link Texture} for the given {@link Color}
+	 * @return A {@link TextureRegion} of (radius * 2) + 1 pixels square
 	 */
-	public Texture getCircleTexture(Color color, int radius, int lineHeight) {
-		int bits = color.toIntBits();
-		String key = "" + bits + "," + radius + "," + lineHeight;
-		if (!circleTextures.containsKey(key)) {
-			Pixmap pixmap = new Pixmap((radius * 2) + 1, (radius * 2) + 1,
-					Pixmap.Format.RGBA8888);
-			pixmap.setColor(color);
-			for (int i = 0; i < lineHeight; i++) {
-				pixmap.drawCircle(radius, radius, radius - i);
-			}
-			circleTextures.put(key, new Texture(pixmap));
-			pixmap.dispose();
-		}
-		return circleTextures.get(key);
+	public TextureRegion getCircleTexture(Color color, int radius,
+			int lineHeight) {
+		return getRegion(CIRCLE, color, radius, radius, lineHeight);
 	}
 
 	/**
-	 * Returns a filled circular texture for the provided {@link Color}
+	 * Returns a filled circular texture region for the provided {@link Color}
 	 * 
 	 * @param color
 	 *            The {@link Color} to fetch a texture of
 	 * @param radius
 	 *            The radius of the circle
-	 * @return A new {@link Texture} if this is first time it has been
-	 *         requested, otherwise it will return a cached instance of the
-	 *         {@link Texture} for the given {@link Color}
+	 * @return A {@link TextureRegion} of (radius * 2) + 1 pixels square
+	 */
+	public TextureRegion getFilledCircleTexture(Color color, int radius) {
+		return getRegion(FILLED_CIRCLE, color, radius, radius, 0);
+	}
+
+	/**
+	 * Disposes all pages
 	 */
-	public Texture getFilledCircleTexture(Color color, int radius) {
-		int bits = color.toIntBits();
-		String key = "" + bits + "," + radius;
-		if (!filledCircleTextures.containsKey(key)) {
-			Pixmap pixmap = new Pixmap((radius * 2) + 1, (radius * 2) + 1,
+	public void dispose() {
+		atlas.clear();
+	}
+
+	private TextureRegion getRegion(int type, Color color, int width,
+			int height, int lineHeight) {
+		int colorBits = color.toIntBits();
+		ShapeAtlas.Entry entry = atlas.get(type, colorBits, width, height,
+				lineHeight);
+		if (entry == null) {
+			entry = createEntry(type, color, colorBits, width, height,
+					lineHeight);
+		}
+		return entry.region;
+	}
+
+	private ShapeAtlas.Entry createEntry(int type, Color color, int colorBits,
+			int width, int height, int lineHeight) {
+		Pixmap pixmap;
+		int regionX = 0, regionY = 0, regionWidth, regionHeight;
+		switch (type) {
+		case FILLED_RECTANGLE:
+			/* Surround the pixel with the same colour so filtering can't bleed */
+			pixmap = new Pixmap(3, 3, Pixmap.Format.RGBA8888);
+			pixmap.setColor(color);
+			pixmap.fill();
+			regionX = 1;
+			regionY = 1;
+			regionWidth = 1;
+			regionHeight = 1;
+			break;
+		case RECTANGLE:
+			pixmap = new Pixmap(width + 1, height + 1, Pixmap.Format.RGBA8888);
+			pixmap.setColor(color);
+			for (int i = 0; i < lineHeight; i++) {
+				pixmap.drawRectangle(i, i, width - (i * 2), height - (i * 2));
+			}
+			regionWidth = width;
+			regionHeight = height;
+			break;
+		case CIRCLE:
+			pixmap = new Pixmap((width * 2) + 1, (width * 2) + 1,
 					Pixmap.Format.RGBA8888);
 			pixmap.setColor(color);
-			pixmap.fillCircle(radius, radius, radius);
-			filledCircleTextures.put(key, new Texture(pixmap));
-			pixmap.dispose();
+			for (int i = 0; i < lineHeight; i++) {
+				pixmap.drawCircle(width, width, width - i);
+			}
+			regionWidth = pixmap.getWidth();
+			regionHeight = pixmap.getHeight();
+			break;
+		default:
+			pixmap = new Pixmap((width * 2) + 1, (width * 2) + 1,
+					Pixmap.Format.RGBA8888);
+			pixmap.setColor(color);
+			pixmap.fillCircle(width, width, width);
+			regionWidth = pixmap.getWidth();
+			regionHeight = pixmap.getHeight();
+			break;
 		}
-		return filledCircleTextures.get(key);
+
+		ShapeAtlas.Entry entry = atlas.add(type, colorBits, width, height,
+				lineHeight, pixmap.getWidth(), pixmap.getHeight());
+		entry.page.texture.draw(pixmap, entry.x, entry.y);
+		entry.region = new TextureRegion(entry.page.texture, entry.x
+				+ regionX, entry.y + regionY, regionWidth, regionHeight);
+		pixmap.dispose();
+		return entry;
+	}
+
+	/**
+	 * Returns the number of bytes of texture memory used by the pages
+	 * 
+	 * @return
+	 */
+	public long getTotalBytes() {
+		return atlas.getTotalBytes();
+	}
+
+	public int getTotalPages() {
+		return atlas.getTotalPages();
+	}
+
+	public int getPageSize() {
+		return atlas.getPageSize();
+	}
+
+	public long getBudget() {
+		return atlas.getBudget();
 	}
 }
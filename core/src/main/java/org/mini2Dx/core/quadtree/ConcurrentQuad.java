@@ -0,0 +1,479 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.mini2Dx.core.engine.Parallelogram;
+import org.mini2Dx.core.engine.Positionable;
+import org.mini2Dx.core.geom.LineSegment;
+
+/**
+ * A thread-safe point quad. The area is split into a fixed grid of stripes,
+ * each an independent {@link Quad} guarded by its own read-write lock, so any
+ * number of threads can query while writes only lock the stripes they
+ * modify.
+ * 
+ * Element movement is always deferred: moves may be made from any thread and
+ * are recorded under a lock per stripe, then applied by {@link #flushMoves()}
+ * once per update. Queries see the tree as it was after the last flush.
+ */
+public class ConcurrentQuad<T extends Positionable> {
+	protected final float x, y, width, height;
+	protected final int stripesPerAxis;
+	protected final float stripeWidth, stripeHeight;
+
+	protected final Quad<T>[] stripes;
+	protected final ReadWriteLock[] stripeLocks;
+	protected Quad<T> overflow;
+	protected ReadWriteLock overflowLock;
+
+	private final List<T> elementsLeftStripes = new ArrayList<T>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param elementLimitPerQuad
+	 *            The element limit of each {@link Quad}
+	 * @param stripesPerAxis
+	 *            The number of stripes along each axis, e.g. 4 for 16
+	 *            independently locked stripes
+	 * @param x
+	 *            The x coordinate of the area
+	 * @param y
+	 *            The y coordinate of the area
+	 * @param width
+	 *            The width of the area
+	 * @param height
+	 *            The height of the area
+	 */
+	public ConcurrentQuad(int elementLimitPerQuad, int stripesPerAxis,
+			float x, float y, float width, float height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.stripesPerAxis = Math.max(1, stripesPerAxis);
+		this.stripeWidth = width / this.stripesPerAxis;
+		this.stripeHeight = height / this.stripesPerAxis;
+
+		int totalStripes = this.stripesPerAxis * this.stripesPerAxis;
+		@SuppressWarnings("unchecked")
+		Quad<T>[] stripes = (Quad<T>[]) new Quad<?>[totalStripes];
+		this.stripes = stripes;
+		stripeLocks = new ReadWriteLock[totalStripes];
+		for (int i = 0; i < totalStripes; i++) {
+			float stripeX = x + ((i % this.stripesPerAxis) * stripeWidth);
+			float stripeY = y + ((i / this.stripesPerAxis) * stripeHeight);
+			stripes[i] = createStripe(elementLimitPerQuad, stripeX, stripeY,
+					stripeWidth, stripeHeight);
+			stripes[i].setDeferMoves(true);
+			stripeLocks[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	/**
+	 * Creates the {@link Quad} for a stripe. Implementations must call
+	 * {@link #onElementLeftStripe(Positionable)} when an element moves out of
+	 * the stripe.
+	 */
+	protected Quad<T> createStripe(int elementLimitPerQuad, float x, float y,
+			float width, float height) {
+		return new Quad<T>(elementLimitPerQuad, x, y, width, height) {
+			private static final long serialVersionUID = -6206893766553451519L;
+
+			@Override
+			protected void onElementLeftBounds(T element) {
+				onElementLeftStripe(element);
+			}
+		};
+	}
+
+	/**
+	 * Returns the index of the stripe an element should be stored in
+	 * 
+	 * @param element
+	 *            The element
+	 * @return -1 if the element should be stored in the overflow {@link Quad}
+	 */
+	protected int getStripeIndex(T element) {
+		return getStripeIndex(element.getX(), element.getY());
+	}
+
+	protected int getStripeIndex(float pointX, float pointY) {
+		int column = getColumn(pointX);
+		int row = getRow(pointY);
+		return (row * stripesPerAxis) + column;
+	}
+
+	protected int getColumn(float pointX) {
+		int result = (int) ((pointX - x) / stripeWidth);
+		return Math.max(0, Math.min(stripesPerAxis - 1, result));
+	}
+
+	protected int getRow(float pointY) {
+		int result = (int) ((pointY - y) / stripeHeight);
+		return Math.max(0, Math.min(stripesPerAxis - 1, result));
+	}
+
+	protected void onElementLeftStripe(T element) {
+		elementsLeftStripes.add(element);
+	}
+
+	/**
+	 * Adds an element, locking only the stripe it is stored in
+	 * 
+	 * @param element
+	 *            The element to add
+	 * @return False if the element is outside of this {@link ConcurrentQuad}
+	 */
+	public boolean add(T element) {
+		if (element == null)
+			return false;
+
+		int stripeIndex = getStripeIndex(element);
+		if (stripeIndex >= 0) {
+			stripeLocks[stripeIndex].writeLock().lock();
+			try {
+				if (stripes[stripeIndex].add(element)) {
+					return true;
+				}
+			} finally {
+				stripeLocks[stripeIndex].writeLock().unlock();
+			}
+		}
+		if (overflow == null) {
+			return false;
+		}
+		overflowLock.writeLock().lock();
+		try {
+			return overflow.add(element);
+		} finally {
+			overflowLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes an element, locking only the stripe it is stored in. An element
+	 * that has moved since the last flush is removed from the stripe that
+	 * recorded the move.
+	 * 
+	 * @param element
+	 *            The element to remove
+	 * @return False if the element was not found
+	 */
+	public boolean remove(T element) {
+		if (element == null)
+			return false;
+
+		int stripeIndex = getStripeIndex(element);
+		if (stripeIndex >= 0) {
+			stripeLocks[stripeIndex].writeLock().lock();
+			try {
+				if (stripes[stripeIndex].remove(element)) {
+					return true;
+				}
+			} finally {
+				stripeLocks[stripeIndex].writeLock().unlock();
+			}
+		}
+		if (overflow != null) {
+			overflowLock.writeLock().lock();
+			try {
+				if (overflow.remove(element)) {
+					return true;
+				}
+			} finally {
+				overflowLock.writeLock().unlock();
+			}
+		}
+		return removeMovedElement(element);
+	}
+
+	private boolean removeMovedElement(T element) {
+		for (int i = 0; i < stripes.length; i++) {
+			if (!stripes[i].hasDeferredMoves()) {
+				continue;
+			}
+			stripeLocks[i].writeLock().lock();
+			try {
+				if (stripes[i].removeMovedElement(element)) {
+					return true;
+				}
+			} finally {
+				stripeLocks[i].writeLock().unlock();
+			}
+		}
+		if (overflow == null || !overflow.hasDeferredMoves()) {
+			return false;
+		}
+		overflowLock.writeLock().lock();
+		try {
+			return overflow.removeMovedElement(element);
+		} finally {
+			overflowLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Relocates all elements that have moved since the last call. Only the
+	 * stripes that contain moved elements are locked, one at a time.
+	 */
+	public synchronized void flushMoves() {
+		for (int i = 0; i < stripes.length; i++) {
+			if (!stripes[i].hasDeferredMoves()) {
+				continue;
+			}
+			stripeLocks[i].writeLock().lock();
+			try {
+				stripes[i].flushMoves();
+			} finally {
+				stripeLocks[i].writeLock().unlock();
+			}
+		}
+		if (overflow != null && overflow.hasDeferredMoves()) {
+			overflowLock.writeLock().lock();
+			try {
+				overflow.flushMoves();
+			} finally {
+				overflowLock.writeLock().unlock();
+			}
+		}
+		for (int i = elementsLeftStripes.size() - 1; i >= 0; i--) {
+			add(elementsLeftStripes.get(i));
+		}
+		elementsLeftStripes.clear();
+	}
+
+	/**
+	 * @see Quad#getElementsWithinRegion(Parallelogram)
+	 */
+	public List<T> getElementsWithinRegion(Parallelogram parallelogram) {
+		List<T> result = new ArrayList<T>();
+		getElementsWithinRegion(result, parallelogram);
+		return result;
+	}
+
+	/**
+	 * @see Quad#getElementsWithinRegion(Collection, Parallelogram)
+	 */
+	public void getElementsWithinRegion(Collection<T> result,
+			Parallelogram parallelogram) {
+		for (int i = 0; i < stripes.length; i++) {
+			if (!stripes[i].contains(parallelogram)
+					&& !stripes[i].intersects(parallelogram)) {
+				continue;
+			}
+			stripeLocks[i].readLock().lock();
+			try {
+				stripes[i].getElementsWithinRegion(result, parallelogram);
+			} finally {
+				stripeLocks[i].readLock().unlock();
+			}
+		}
+		if (overflow == null) {
+			return;
+		}
+		overflowLock.readLock().lock();
+		try {
+			overflow.getElementsWithinRegion(result, parallelogram);
+		} finally {
+			overflowLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @see Quad#getElementsWithinRegion(QuadElementVisitor, Parallelogram)
+	 */
+	public void getElementsWithinRegion(QuadElementVisitor<T> visitor,
+			Parallelogram parallelogram) {
+		for (int i = 0; i < stripes.length; i++) {
+			if (!stripes[i].contains(parallelogram)
+					&& !stripes[i].intersects(parallelogram)) {
+				continue;
+			}
+			stripeLocks[i].readLock().lock();
+			try {
+				stripes[i].getElementsWithinRegion(visitor, parallelogram);
+			} finally {
+				stripeLocks[i].readLock().unlock();
+			}
+		}
+		if (overflow == null) {
+			return;
+		}
+		overflowLock.readLock().lock();
+		try {
+			overflow.getElementsWithinRegion(visitor, parallelogram);
+		} finally {
+			overflowLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @see Quad#getElementsIntersectingLineSegment(LineSegment)
+	 */
+	public List<T> getElementsIntersectingLineSegment(LineSegment lineSegment) {
+		List<T> result = new ArrayList<T>();
+		getElementsIntersectingLineSegment(result, lineSegment);
+		return result;
+	}
+
+	/**
+	 * @see Quad#getElementsIntersectingLineSegment(Collection, LineSegment)
+	 */
+	public void getElementsIntersectingLineSegment(Collection<T> result,
+			LineSegment lineSegment) {
+		for (int i = 0; i < stripes.length; i++) {
+			if (!isStripeOverlappingLineSegment(i, lineSegment)) {
+				continue;
+			}
+			stripeLocks[i].readLock().lock();
+			try {
+				stripes[i].getElementsIntersectingLineSegment(result,
+						lineSegment);
+			} finally {
+				stripeLocks[i].readLock().unlock();
+			}
+		}
+		if (overflow == null) {
+			return;
+		}
+		overflowLock.readLock().lock();
+		try {
+			overflow.getElementsIntersectingLineSegment(result, lineSegment);
+		} finally {
+			overflowLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @see Quad#getElementsIntersectingLineSegment(QuadElementVisitor,
+	 *      LineSegment)
+	 */
+	public void getElementsIntersectingLineSegment(
+			QuadElementVisitor<T> visitor, LineSegment lineSegment) {
+		for (int i = 0; i < stripes.length; i++) {
+			if (!isStripeOverlappingLineSegment(i, lineSegment)) {
+				continue;
+			}
+			stripeLocks[i].readLock().lock();
+			try {
+				stripes[i].getElementsIntersectingLineSegment(visitor,
+						lineSegment);
+			} finally {
+				stripeLocks[i].readLock().unlock();
+			}
+		}
+		if (overflow == null) {
+			return;
+		}
+		overflowLock.readLock().lock();
+		try {
+			overflow.getElementsIntersectingLineSegment(visitor, lineSegment);
+		} finally {
+			overflowLock.readLock().unlock();
+		}
+	}
+
+	private boolean isStripeOverlappingLineSegment(int stripeIndex,
+			LineSegment lineSegment) {
+		Quad<T> stripe = stripes[stripeIndex];
+		return lineSegment.getMaxX() >= stripe.getX()
+				&& lineSegment.getMinX() <= stripe.getX() + stripeWidth
+				&& lineSegment.getMaxY() >= stripe.getY()
+				&& lineSegment.getMinY() <= stripe.getY() + stripeHeight;
+	}
+
+	/**
+	 * @see Quad#getElements()
+	 */
+	public List<T> getElements() {
+		List<T> result = new ArrayList<T>();
+		getElements(result);
+		return result;
+	}
+
+	/**
+	 * @see Quad#getElements(Collection)
+	 */
+	public void getElements(Collection<T> result) {
+		for (int i = 0; i < stripes.length; i++) {
+			stripeLocks[i].readLock().lock();
+			try {
+				stripes[i].getElements(result);
+			} finally {
+				stripeLocks[i].readLock().unlock();
+			}
+		}
+		if (overflow == null) {
+			return;
+		}
+		overflowLock.readLock().lock();
+		try {
+			overflow.getElements(result);
+		} finally {
+			overflowLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the total number of elements across all stripes
+	 * 
+	 * @return 0 if empty
+	 */
+	public int getTotalElements() {
+		int result = 0;
+		for (int i = 0; i < stripes.length; i++) {
+			stripeLocks[i].readLock().lock();
+			try {
+				result += stripes[i].getTotalElements();
+			} finally {
+				stripeLocks[i].readLock().unlock();
+			}
+		}
+		if (overflow == null) {
+			return result;
+		}
+		overflowLock.readLock().lock();
+		try {
+			result += overflow.getTotalElements();
+		} finally {
+			overflowLock.readLock().unlock();
+		}
+		return result;
+	}
+
+	public float getX() {
+		return x;
+	}
+
+	public float getY() {
+		return y;
+	}
+
+	public float getWidth() {
+		return width;
+	}
+
+	public float getHeight() {
+		return height;
+	}
+
+	public int getStripesPerAxis() {
+		return stripesPerAxis;
+	}
+}
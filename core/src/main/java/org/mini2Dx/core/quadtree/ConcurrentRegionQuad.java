@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.mini2Dx.core.engine.Parallelogram;
+
+/**
+ * A thread-safe region quad. Elements that fit entirely within one stripe are
+ * stored in that stripe's {@link RegionQuad}; elements that span multiple
+ * stripes are stored in a separately locked overflow {@link RegionQuad}.
+ * 
+ * @see ConcurrentQuad
+ */
+public class ConcurrentRegionQuad<T extends Parallelogram> extends
+		ConcurrentQuad<T> {
+
+	/**
+	 * Constructor
+	 * 
+	 * @see ConcurrentQuad#ConcurrentQuad(int, int, float, float, float, float)
+	 */
+	public ConcurrentRegionQuad(int elementLimitPerQuad, int stripesPerAxis,
+			float x, float y, float width, float height) {
+		super(elementLimitPerQuad, stripesPerAxis, x, y, width, height);
+		overflow = new RegionQuad<T>(elementLimitPerQuad, x, y, width, height);
+		overflow.setDeferMoves(true);
+		overflowLock = new ReentrantReadWriteLock();
+	}
+
+	@Override
+	protected Quad<T> createStripe(int elementLimitPerQuad, float x, float y,
+			float width, float height) {
+		return new RegionQuad<T>(elementLimitPerQuad, x, y, width, height) {
+			private static final long serialVersionUID = 2907441447330569417L;
+
+			@Override
+			protected boolean isWithinBounds(T element) {
+				return this.contains(element);
+			}
+
+			@Override
+			protected void onElementLeftBounds(T element) {
+				onElementLeftStripe(element);
+			}
+		};
+	}
+
+	@Override
+	protected int getStripeIndex(T element) {
+		int column = getColumn(element.getMinX());
+		int row = getRow(element.getMinY());
+		if (column != getColumn(element.getMaxX())
+				|| row != getRow(element.getMaxY())) {
+			return -1;
+		}
+		return (row * stripesPerAxis) + column;
+	}
+}
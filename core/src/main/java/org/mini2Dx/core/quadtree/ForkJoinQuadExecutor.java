@@ -0,0 +1,342 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import org.mini2Dx.core.engine.Parallelogram;
+import org.mini2Dx.core.engine.Positionable;
+import org.mini2Dx.core.geom.LineSegment;
+
+/**
+ * Runs {@link Quad} queries and bulk loads across a {@link ForkJoinPool}.
+ * Subtrees holding more elements than the parallel threshold are split into
+ * one task per child {@link Quad}; smaller subtrees are processed serially.
+ * 
+ * Queries may run concurrently with each other but not with modifications to
+ * the {@link Quad}.
+ */
+public class ForkJoinQuadExecutor<T extends Positionable> {
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+
+	private final ForkJoinPool pool;
+	private final int parallelThreshold;
+
+	/**
+	 * Constructor. Uses {@link #DEFAULT_PARALLEL_THRESHOLD}.
+	 * 
+	 * @param pool
+	 *            The {@link ForkJoinPool} to run tasks on
+	 */
+	public ForkJoinQuadExecutor(ForkJoinPool pool) {
+		this(pool, DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param pool
+	 *            The {@link ForkJoinPool} to run tasks on
+	 * @param parallelThreshold
+	 *            The number of elements a subtree must exceed before its
+	 *            children are processed in parallel
+	 */
+	public ForkJoinQuadExecutor(ForkJoinPool pool, int parallelThreshold) {
+		this.pool = pool;
+		this.parallelThreshold = Math.max(1, parallelThreshold);
+	}
+
+	/**
+	 * Returns all elements of a {@link Quad} within a region
+	 * 
+	 * @see Quad#getElementsWithinRegion(Parallelogram)
+	 */
+	public List<T> getElementsWithinRegion(Quad<T> quad,
+			Parallelogram parallelogram) {
+		return pool.invoke(new RegionTask<T>(this, quad, parallelogram));
+	}
+
+	/**
+	 * Adds all elements of a {@link Quad} within a region to a
+	 * {@link Collection}
+	 * 
+	 * @see Quad#getElementsWithinRegion(Collection, Parallelogram)
+	 */
+	public void getElementsWithinRegion(Quad<T> quad, Collection<T> result,
+			Parallelogram parallelogram) {
+		result.addAll(getElementsWithinRegion(quad, parallelogram));
+	}
+
+	/**
+	 * Returns all elements of a {@link Quad} intersecting a
+	 * {@link LineSegment}
+	 * 
+	 * @see Quad#getElementsIntersectingLineSegment(LineSegment)
+	 */
+	public List<T> getElementsIntersectingLineSegment(Quad<T> quad,
+			LineSegment lineSegment) {
+		return pool.invoke(new LineSegmentTask<T>(this, quad, lineSegment));
+	}
+
+	/**
+	 * Adds all elements of a {@link Quad} intersecting a {@link LineSegment} to
+	 * a {@link Collection}
+	 * 
+	 * @see Quad#getElementsIntersectingLineSegment(Collection, LineSegment)
+	 */
+	public void getElementsIntersectingLineSegment(Quad<T> quad,
+			Collection<T> result, LineSegment lineSegment) {
+		result.addAll(getElementsIntersectingLineSegment(quad, lineSegment));
+	}
+
+	/**
+	 * Returns all elements of a {@link Quad}
+	 * 
+	 * @see Quad#getElements()
+	 */
+	public List<T> getElements(Quad<T> quad) {
+		return pool.invoke(new ElementsTask<T>(this, quad));
+	}
+
+	/**
+	 * Bulk loads elements into a {@link Quad}, building each large enough
+	 * subtree in parallel
+	 * 
+	 * @see Quad#bulkLoad(Collection)
+	 */
+	public boolean bulkLoad(Quad<T> quad, Collection<T> elements) {
+		int existingElements = quad.totalElements;
+		Object[] buffer = quad.prepareBulkLoad(elements);
+		pool.invoke(new BulkLoadTask<T>(this, quad, buffer, new Object[buffer.length],
+				new byte[buffer.length], 0, buffer.length));
+		quad.finishBulkLoad();
+		return buffer.length - existingElements == elements.size();
+	}
+
+	private boolean isParallel(Quad<T> quad) {
+		return quad.topLeft != null && quad.totalElements > parallelThreshold;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	private static abstract class QueryTask<T extends Positionable> extends
+			RecursiveTask<List<T>> {
+		private static final long serialVersionUID = 5196567010651404349L;
+
+		protected final ForkJoinQuadExecutor<T> executor;
+		protected final Quad<T> quad;
+
+		public QueryTask(ForkJoinQuadExecutor<T> executor, Quad<T> quad) {
+			this.executor = executor;
+			this.quad = quad;
+		}
+
+		@Override
+		protected List<T> compute() {
+			List<T> result = new ArrayList<T>();
+			if (!executor.isParallel(quad)) {
+				computeSerial(result);
+				return result;
+			}
+			QueryTask<T> topLeftTask = fork(quad.topLeft);
+			QueryTask<T> topRightTask = fork(quad.topRight);
+			QueryTask<T> bottomLeftTask = fork(quad.bottomLeft);
+			QueryTask<T> bottomRightTask = fork(quad.bottomRight);
+
+			if (quad.elements != null) {
+				for (int i = quad.elements.size() - 1; i >= 0; i--) {
+					T element = quad.elements.get(i);
+					if (element != null && matches(element)) {
+						result.add(element);
+					}
+				}
+			}
+			join(topLeftTask, result);
+			join(topRightTask, result);
+			join(bottomLeftTask, result);
+			join(bottomRightTask, result);
+			return result;
+		}
+
+		private QueryTask<T> fork(Quad<T> child) {
+			if (!isSearchable(child)) {
+				return null;
+			}
+			QueryTask<T> task = createTask(child);
+			task.fork();
+			return task;
+		}
+
+		private void join(QueryTask<T> task, List<T> result) {
+			if (task == null) {
+				return;
+			}
+			result.addAll(task.join());
+		}
+
+		protected abstract void computeSerial(List<T> result);
+
+		protected abstract boolean isSearchable(Quad<T> child);
+
+		protected abstract boolean matches(T element);
+
+		protected abstract QueryTask<T> createTask(Quad<T> child);
+	}
+
+	private static class RegionTask<T extends Positionable> extends
+			QueryTask<T> {
+		private static final long serialVersionUID = -6409436359917212460L;
+
+		private final Parallelogram parallelogram;
+
+		public RegionTask(ForkJoinQuadExecutor<T> executor, Quad<T> quad,
+				Parallelogram parallelogram) {
+			super(executor, quad);
+			this.parallelogram = parallelogram;
+		}
+
+		@Override
+		protected void computeSerial(List<T> result) {
+			quad.getElementsWithinRegion(result, parallelogram);
+		}
+
+		@Override
+		protected boolean isSearchable(Quad<T> child) {
+			return child.contains(parallelogram)
+					|| child.intersects(parallelogram);
+		}
+
+		@Override
+		protected boolean matches(T element) {
+			return quad.isElementWithinRegion(element, parallelogram);
+		}
+
+		@Override
+		protected QueryTask<T> createTask(Quad<T> child) {
+			return new RegionTask<T>(executor, child, parallelogram);
+		}
+	}
+
+	private static class LineSegmentTask<T extends Positionable> extends
+			QueryTask<T> {
+		private static final long serialVersionUID = -2923717707370925745L;
+
+		private final LineSegment lineSegment;
+
+		public LineSegmentTask(ForkJoinQuadExecutor<T> executor,
+				Quad<T> quad, LineSegment lineSegment) {
+			super(executor, quad);
+			this.lineSegment = lineSegment;
+		}
+
+		@Override
+		protected void computeSerial(List<T> result) {
+			quad.getElementsIntersectingLineSegment(result, lineSegment);
+		}
+
+		@Override
+		protected boolean isSearchable(Quad<T> child) {
+			return child.isLineSegmentWithinBounds(lineSegment);
+		}
+
+		@Override
+		protected boolean matches(T element) {
+			return quad.isElementIntersectingLineSegment(element, lineSegment);
+		}
+
+		@Override
+		protected QueryTask<T> createTask(Quad<T> child) {
+			return new LineSegmentTask<T>(executor, child, lineSegment);
+		}
+	}
+
+	private static class ElementsTask<T extends Positionable> extends
+			QueryTask<T> {
+		private static final long serialVersionUID = 1907870395658335264L;
+
+		public ElementsTask(ForkJoinQuadExecutor<T> executor, Quad<T> quad) {
+			super(executor, quad);
+		}
+
+		@Override
+		protected void computeSerial(List<T> result) {
+			quad.getElements(result);
+		}
+
+		@Override
+		protected boolean isSearchable(Quad<T> child) {
+			return true;
+		}
+
+		@Override
+		protected boolean matches(T element) {
+			return true;
+		}
+
+		@Override
+		protected QueryTask<T> createTask(Quad<T> child) {
+			return new ElementsTask<T>(executor, child);
+		}
+	}
+
+	private static class BulkLoadTask<T extends Positionable> extends
+			RecursiveAction {
+		private static final long serialVersionUID = -7557236716342870372L;
+
+		private final ForkJoinQuadExecutor<T> executor;
+		private final Quad<T> quad;
+		private final Object[] buffer, scratch;
+		private final byte[] quadrants;
+		private final int from, to;
+
+		public BulkLoadTask(ForkJoinQuadExecutor<T> executor, Quad<T> quad,
+				Object[] buffer, Object[] scratch, byte[] quadrants, int from,
+				int to) {
+			this.executor = executor;
+			this.quad = quad;
+			this.buffer = buffer;
+			this.scratch = scratch;
+			this.quadrants = quadrants;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= executor.getParallelThreshold()) {
+				quad.bulkLoad(buffer, scratch, quadrants, from, to);
+				return;
+			}
+			int[] offsets = quad.partitionForBulkLoad(buffer, scratch,
+					quadrants, from, to);
+			if (offsets == null) {
+				return;
+			}
+			invokeAll(new BulkLoadTask<T>(executor, quad.topLeft, buffer,
+					scratch, quadrants, from, offsets[0]),
+					new BulkLoadTask<T>(executor, quad.topRight, buffer,
+							scratch, quadrants, offsets[0], offsets[1]),
+					new BulkLoadTask<T>(executor, quad.bottomLeft, buffer,
+							scratch, quadrants, offsets[1], offsets[2]),
+					new BulkLoadTask<T>(executor, quad.bottomRight, buffer,
+							scratch, quadrants, offsets[2], offsets[3]));
+			quad.finishPartitionForBulkLoad();
+		}
+	}
+}
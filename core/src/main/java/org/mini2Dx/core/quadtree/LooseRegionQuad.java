@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import org.mini2Dx.core.engine.Parallelogram;
+
+/**
+ * Implements a loose region quad. Each child's bounds are its quadrant of the
+ * parent enlarged by a looseness factor, and elements are placed in the child
+ * whose quadrant holds their center. Elements that straddle a midline can then
+ * still be stored in a child instead of remaining in the upper quads where
+ * every query has to test them.
+ * 
+ * @see <a href="http://www.tulrich.com/geekstuff/partitioning.html">Loose
+ *      Octrees</a>
+ */
+public class LooseRegionQuad<T extends Parallelogram> extends RegionQuad<T> {
+    private static final long serialVersionUID = 2812734071698437719L;
+
+    public static final float DEFAULT_LOOSENESS = 2f;
+
+    private final float looseness;
+    private final float tightX, tightY, tightWidth, tightHeight;
+
+    public LooseRegionQuad(int elementLimit, float x, float y, float width, float height) {
+        this(elementLimit, DEFAULT_LOOSENESS, x, y, width, height);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param elementLimit
+     *            The number of elements a quad holds before subdividing
+     * @param looseness
+     *            The factor child bounds are enlarged by. 1 behaves like a
+     *            {@link RegionQuad}, 2 lets an element up to the size of a
+     *            child's quadrant be stored in that child.
+     * @param x
+     *            The x coordinate of the root quad
+     * @param y
+     *            The y coordinate of the root quad
+     * @param width
+     *            The width of the root quad
+     * @param height
+     *            The height of the root quad
+     */
+    public LooseRegionQuad(int elementLimit, float looseness, float x, float y, float width, float height) {
+        super(elementLimit, x, y, width, height);
+        if (looseness < 1f) {
+            throw new IllegalArgumentException("looseness must be 1 or greater");
+        }
+        this.looseness = looseness;
+        this.tightX = x;
+        this.tightY = y;
+        this.tightWidth = width;
+        this.tightHeight = height;
+    }
+
+    protected LooseRegionQuad(LooseRegionQuad<T> parent, float tightX, float tightY, float tightWidth,
+            float tightHeight) {
+        super(parent, tightX - (tightWidth * (parent.looseness - 1f) / 2f),
+                tightY - (tightHeight * (parent.looseness - 1f) / 2f), tightWidth * parent.looseness,
+                tightHeight * parent.looseness);
+        this.looseness = parent.looseness;
+        this.tightX = tightX;
+        this.tightY = tightY;
+        this.tightWidth = tightWidth;
+        this.tightHeight = tightHeight;
+    }
+
+    @Override
+    protected boolean addElementToChild(T element) {
+        byte quadrant = getChildQuadrant(element);
+        if (quadrant > 3) {
+            return false;
+        }
+        return getChild(quadrant).add(element);
+    }
+
+    @Override
+    protected void subdivide() {
+        if (topLeft != null)
+            return;
+
+        float halfWidth = tightWidth / 2f;
+        float halfHeight = tightHeight / 2f;
+
+        topLeft = new LooseRegionQuad<T>(this, tightX, tightY, halfWidth, halfHeight);
+        topRight = new LooseRegionQuad<T>(this, tightX + halfWidth, tightY, halfWidth, halfHeight);
+        bottomLeft = new LooseRegionQuad<T>(this, tightX, tightY + halfHeight, halfWidth, halfHeight);
+        bottomRight = new LooseRegionQuad<T>(this, tightX + halfWidth, tightY + halfHeight, halfWidth, halfHeight);
+        recordSplit();
+
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            if (addElementToChild(elements.get(i))) {
+                removeElement(elements.get(i));
+            }
+        }
+    }
+
+    @Override
+    protected byte getBulkLoadQuadrant(T element) {
+        return getChildQuadrant(element);
+    }
+
+    /**
+     * Returns the child whose quadrant holds the center of an element
+     * 
+     * @return 0 to 3 for top-left, top-right, bottom-left and bottom-right, or
+     *         4 if the element is too large for that child's loose bounds
+     */
+    private byte getChildQuadrant(T element) {
+        float centerX = (element.getMinX() + element.getMaxX()) / 2f;
+        float centerY = (element.getMinY() + element.getMaxY()) / 2f;
+        byte result = 0;
+        if (centerX >= tightX + (tightWidth / 2f)) {
+            result += 1;
+        }
+        if (centerY >= tightY + (tightHeight / 2f)) {
+            result += 2;
+        }
+        if (!getChild(result).contains(element)) {
+            return 4;
+        }
+        return result;
+    }
+
+    public float getLooseness() {
+        return looseness;
+    }
+}
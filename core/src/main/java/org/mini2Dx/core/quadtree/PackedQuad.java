@@ -0,0 +1,646 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mini2Dx.core.engine.Parallelogram;
+import org.mini2Dx.core.engine.PositionChangeListener;
+import org.mini2Dx.core.engine.Positionable;
+import org.mini2Dx.core.geom.LineSegment;
+import org.mini2Dx.core.graphics.Graphics;
+
+import com.badlogic.gdx.graphics.Color;
+
+/**
+ * Implements a point quad whose nodes and elements are stored in primitive
+ * arrays instead of one {@link Quad} object per node. Node bounds, child
+ * indices and per-node element lists are held in parallel arrays and element
+ * coordinates are cached alongside them, so queries read contiguous memory
+ * and never call back into the elements.
+ * 
+ * The four children of a node are allocated together and their index is
+ * stored as the index of the top-left child, followed by top-right,
+ * bottom-left and bottom-right.
+ */
+public class PackedQuad<T extends Positionable> implements
+		PositionChangeListener<T> {
+	private static final int NONE = -1;
+	private static final int INITIAL_NODE_CAPACITY = 16;
+	private static final int INITIAL_ELEMENT_CAPACITY = 16;
+
+	private final int elementLimitPerQuad;
+
+	/* Node storage */
+	private float[] nodeBounds;
+	private int[] nodeParents;
+	private int[] nodeChildren;
+	private int[] nodeFirstElements;
+	private int[] nodeElementCounts;
+	private int[] nodeTotalElements;
+	private int totalNodeSlots;
+	private int freeChildBlock = NONE;
+	private int totalNodes;
+
+	/* Element storage */
+	private Object[] elements;
+	private float[] elementPositions;
+	private int[] elementNodes;
+	private int[] elementNext;
+	private int totalElementSlots;
+	private int freeElement = NONE;
+	private final Map<T, Integer> elementIds = new IdentityHashMap<T, Integer>();
+
+	public PackedQuad(int elementLimitPerQuad, float x, float y, float width,
+			float height) {
+		this.elementLimitPerQuad = elementLimitPerQuad;
+
+		nodeBounds = new float[INITIAL_NODE_CAPACITY * 4];
+		nodeParents = new int[INITIAL_NODE_CAPACITY];
+		nodeChildren = new int[INITIAL_NODE_CAPACITY];
+		nodeFirstElements = new int[INITIAL_NODE_CAPACITY];
+		nodeElementCounts = new int[INITIAL_NODE_CAPACITY];
+		nodeTotalElements = new int[INITIAL_NODE_CAPACITY];
+
+		elements = new Object[INITIAL_ELEMENT_CAPACITY];
+		elementPositions = new float[INITIAL_ELEMENT_CAPACITY * 2];
+		elementNodes = new int[INITIAL_ELEMENT_CAPACITY];
+		elementNext = new int[INITIAL_ELEMENT_CAPACITY];
+
+		totalNodeSlots = 1;
+		totalNodes = 1;
+		initialiseNode(0, NONE, x, y, width, height);
+	}
+
+	public void render(Graphics g) {
+		Color tmp = g.getColor();
+		render(g, 0);
+		g.setColor(tmp);
+	}
+
+	private void render(Graphics g, int node) {
+		if (nodeChildren[node] != NONE) {
+			for (int i = 0; i < 4; i++) {
+				render(g, nodeChildren[node] + i);
+			}
+			return;
+		}
+		g.setColor(Quad.QUAD_COLOR);
+		g.drawRect(nodeBounds[node * 4], nodeBounds[node * 4 + 1],
+				nodeBounds[node * 4 + 2], nodeBounds[node * 4 + 3]);
+		g.setColor(Quad.ELEMENT_COLOR);
+		for (int id = nodeFirstElements[node]; id != NONE; id = elementNext[id]) {
+			g.fillRect(elementPositions[id * 2], elementPositions[id * 2 + 1],
+					1f, 1f);
+		}
+	}
+
+	public boolean add(T element) {
+		if (element == null)
+			return false;
+		if (elementIds.containsKey(element))
+			return false;
+
+		float elementX = element.getX();
+		float elementY = element.getY();
+		if (!isWithinRoot(elementX, elementY)) {
+			return false;
+		}
+
+		int id = allocateElement();
+		elements[id] = element;
+		elementPositions[id * 2] = elementX;
+		elementPositions[id * 2 + 1] = elementY;
+		elementIds.put(element, id);
+		element.addPostionChangeListener(this);
+		insert(id);
+		return true;
+	}
+
+	public boolean remove(T element) {
+		if (element == null)
+			return false;
+
+		Integer id = elementIds.remove(element);
+		if (id == null) {
+			return false;
+		}
+		element.removePositionChangeListener(this);
+		int node = elementNodes[id];
+		unlink(id);
+		freeElement(id);
+		mergeIfRequired(node);
+		return true;
+	}
+
+	/**
+	 * Removes all elements and child nodes
+	 */
+	public void clear() {
+		for (T element : elementIds.keySet()) {
+			element.removePositionChangeListener(this);
+		}
+		elementIds.clear();
+		Arrays.fill(elements, 0, totalElementSlots, null);
+		totalElementSlots = 0;
+		freeElement = NONE;
+
+		totalNodeSlots = 1;
+		totalNodes = 1;
+		freeChildBlock = NONE;
+		initialiseNode(0, NONE, nodeBounds[0], nodeBounds[1], nodeBounds[2],
+				nodeBounds[3]);
+	}
+
+	@Override
+	public void positionChanged(T moved) {
+		Integer boxedId = elementIds.get(moved);
+		if (boxedId == null) {
+			return;
+		}
+		int id = boxedId;
+		float elementX = moved.getX();
+		float elementY = moved.getY();
+		elementPositions[id * 2] = elementX;
+		elementPositions[id * 2 + 1] = elementY;
+
+		if (!isWithinRoot(elementX, elementY)) {
+			remove(moved);
+			return;
+		}
+		int node = elementNodes[id];
+		if (findLeaf(elementX, elementY) == node) {
+			return;
+		}
+		unlink(id);
+		insert(id);
+		mergeIfRequired(node);
+	}
+
+	public List<T> getElementsWithinRegion(Parallelogram parallelogram) {
+		List<T> result = new ArrayList<T>();
+		getElementsWithinRegion(result, parallelogram);
+		return result;
+	}
+
+	public void getElementsWithinRegion(Collection<T> result,
+			Parallelogram parallelogram) {
+		getElementsWithinRegion(result, parallelogram, 0,
+				parallelogram.getMinX(), parallelogram.getMinY(),
+				parallelogram.getMaxX(), parallelogram.getMaxY());
+	}
+
+	/**
+	 * Visits all elements within a region without allocating a result
+	 * {@link Collection}
+	 * 
+	 * @param visitor
+	 *            The {@link QuadElementVisitor} to call for each matching
+	 *            element
+	 * @param parallelogram
+	 *            The region to search
+	 */
+	public void getElementsWithinRegion(QuadElementVisitor<T> visitor,
+			Parallelogram parallelogram) {
+		getElementsWithinRegion(visitor, parallelogram, 0,
+				parallelogram.getMinX(), parallelogram.getMinY(),
+				parallelogram.getMaxX(), parallelogram.getMaxY());
+	}
+
+	public List<T> getElementsIntersectingLineSegment(LineSegment lineSegment) {
+		List<T> result = new ArrayList<T>();
+		getElementsIntersectingLineSegment(result, lineSegment);
+		return result;
+	}
+
+	public void getElementsIntersectingLineSegment(Collection<T> result,
+			LineSegment lineSegment) {
+		getElementsIntersectingLineSegment(result, lineSegment, 0,
+				lineSegment.getMinX(), lineSegment.getMinY(),
+				lineSegment.getMaxX(), lineSegment.getMaxY());
+	}
+
+	/**
+	 * Visits all elements intersecting a {@link LineSegment} without
+	 * allocating a result {@link Collection}
+	 * 
+	 * @param visitor
+	 *            The {@link QuadElementVisitor} to call for each matching
+	 *            element
+	 * @param lineSegment
+	 *            The {@link LineSegment} to search along
+	 */
+	public void getElementsIntersectingLineSegment(
+			QuadElementVisitor<T> visitor, LineSegment lineSegment) {
+		getElementsIntersectingLineSegment(visitor, lineSegment, 0,
+				lineSegment.getMinX(), lineSegment.getMinY(),
+				lineSegment.getMaxX(), lineSegment.getMaxY());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void getElementsWithinRegion(Collection<T> result,
+			Parallelogram parallelogram, int node, float minX, float minY,
+			float maxX, float maxY) {
+		if (!overlapsNode(node, minX, minY, maxX, maxY)) {
+			return;
+		}
+		int children = nodeChildren[node];
+		if (children != NONE) {
+			for (int i = 0; i < 4; i++) {
+				getElementsWithinRegion(result, parallelogram, children + i,
+						minX, minY, maxX, maxY);
+			}
+			return;
+		}
+		for (int id = nodeFirstElements[node]; id != NONE; id = elementNext[id]) {
+			if (parallelogram.contains(elementPositions[id * 2],
+					elementPositions[id * 2 + 1])) {
+				result.add((T) elements[id]);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void getElementsWithinRegion(QuadElementVisitor<T> visitor,
+			Parallelogram parallelogram, int node, float minX, float minY,
+			float maxX, float maxY) {
+		if (!overlapsNode(node, minX, minY, maxX, maxY)) {
+			return;
+		}
+		int children = nodeChildren[node];
+		if (children != NONE) {
+			for (int i = 0; i < 4; i++) {
+				getElementsWithinRegion(visitor, parallelogram, children + i,
+						minX, minY, maxX, maxY);
+			}
+			return;
+		}
+		for (int id = nodeFirstElements[node]; id != NONE; id = elementNext[id]) {
+			if (parallelogram.contains(elementPositions[id * 2],
+					elementPositions[id * 2 + 1])) {
+				visitor.visit((T) elements[id]);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void getElementsIntersectingLineSegment(Collection<T> result,
+			LineSegment lineSegment, int node, float minX, float minY,
+			float maxX, float maxY) {
+		if (!overlapsNode(node, minX, minY, maxX, maxY)) {
+			return;
+		}
+		int children = nodeChildren[node];
+		if (children != NONE) {
+			for (int i = 0; i < 4; i++) {
+				getElementsIntersectingLineSegment(result, lineSegment,
+						children + i, minX, minY, maxX, maxY);
+			}
+			return;
+		}
+		for (int id = nodeFirstElements[node]; id != NONE; id = elementNext[id]) {
+			if (lineSegment.contains(elementPositions[id * 2],
+					elementPositions[id * 2 + 1])) {
+				result.add((T) elements[id]);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void getElementsIntersectingLineSegment(
+			QuadElementVisitor<T> visitor, LineSegment lineSegment, int node,
+			float minX, float minY, float maxX, float maxY) {
+		if (!overlapsNode(node, minX, minY, maxX, maxY)) {
+			return;
+		}
+		int children = nodeChildren[node];
+		if (children != NONE) {
+			for (int i = 0; i < 4; i++) {
+				getElementsIntersectingLineSegment(visitor, lineSegment,
+						children + i, minX, minY, maxX, maxY);
+			}
+			return;
+		}
+		for (int id = nodeFirstElements[node]; id != NONE; id = elementNext[id]) {
+			if (lineSegment.contains(elementPositions[id * 2],
+					elementPositions[id * 2 + 1])) {
+				visitor.visit((T) elements[id]);
+			}
+		}
+	}
+
+	public List<T> getElements() {
+		List<T> result = new ArrayList<T>(elementIds.size());
+		getElements(result);
+		return result;
+	}
+
+	/**
+	 * Adds all elements in this {@link PackedQuad} to a caller-owned
+	 * {@link Collection}
+	 * 
+	 * @param result
+	 *            The {@link Collection} to add the elements to
+	 */
+	@SuppressWarnings("unchecked")
+	public void getElements(Collection<T> result) {
+		for (int id = 0; id < totalElementSlots; id++) {
+			if (elements[id] != null) {
+				result.add((T) elements[id]);
+			}
+		}
+	}
+
+	/**
+	 * Visits all elements without allocating a result {@link Collection}
+	 * 
+	 * @param visitor
+	 *            The {@link QuadElementVisitor} to call for each element
+	 */
+	@SuppressWarnings("unchecked")
+	public void getElements(QuadElementVisitor<T> visitor) {
+		for (int id = 0; id < totalElementSlots; id++) {
+			if (elements[id] != null) {
+				visitor.visit((T) elements[id]);
+			}
+		}
+	}
+
+	private void insert(int id) {
+		float elementX = elementPositions[id * 2];
+		float elementY = elementPositions[id * 2 + 1];
+		int node = 0;
+		nodeTotalElements[node]++;
+		while (nodeChildren[node] != NONE) {
+			node = nodeChildren[node] + getQuadrant(node, elementX, elementY);
+			nodeTotalElements[node]++;
+		}
+		link(id, node);
+
+		if (nodeElementCounts[node] > elementLimitPerQuad
+				&& nodeBounds[node * 4 + 2] >= 2f
+				&& nodeBounds[node * 4 + 3] >= 2f) {
+			subdivide(node);
+		}
+	}
+
+	private void subdivide(int node) {
+		int children = allocateChildBlock();
+		float x = nodeBounds[node * 4];
+		float y = nodeBounds[node * 4 + 1];
+		float halfWidth = nodeBounds[node * 4 + 2] / 2f;
+		float halfHeight = nodeBounds[node * 4 + 3] / 2f;
+		initialiseNode(children, node, x, y, halfWidth, halfHeight);
+		initialiseNode(children + 1, node, x + halfWidth, y, halfWidth,
+				halfHeight);
+		initialiseNode(children + 2, node, x, y + halfHeight, halfWidth,
+				halfHeight);
+		initialiseNode(children + 3, node, x + halfWidth, y + halfHeight,
+				halfWidth, halfHeight);
+		nodeChildren[node] = children;
+
+		int id = nodeFirstElements[node];
+		nodeFirstElements[node] = NONE;
+		nodeElementCounts[node] = 0;
+		while (id != NONE) {
+			int next = elementNext[id];
+			int child = children
+					+ getQuadrant(node, elementPositions[id * 2],
+							elementPositions[id * 2 + 1]);
+			nodeTotalElements[child]++;
+			link(id, child);
+			id = next;
+		}
+	}
+
+	/**
+	 * Merges the highest ancestor of a node whose total element count has
+	 * dropped below the element limit
+	 */
+	private void mergeIfRequired(int node) {
+		int mergeTarget = NONE;
+		for (int current = node; current != NONE; current = nodeParents[current]) {
+			if (nodeChildren[current] != NONE
+					&& nodeTotalElements[current] < elementLimitPerQuad) {
+				mergeTarget = current;
+			}
+		}
+		if (mergeTarget != NONE) {
+			int children = nodeChildren[mergeTarget];
+			nodeChildren[mergeTarget] = NONE;
+			for (int i = 0; i < 4; i++) {
+				mergeInto(children + i, mergeTarget);
+			}
+			freeChildBlock(children);
+		}
+	}
+
+	private void mergeInto(int node, int target) {
+		if (nodeChildren[node] != NONE) {
+			int children = nodeChildren[node];
+			for (int i = 0; i < 4; i++) {
+				mergeInto(children + i, target);
+			}
+			freeChildBlock(children);
+		}
+		int id = nodeFirstElements[node];
+		while (id != NONE) {
+			int next = elementNext[id];
+			link(id, target);
+			id = next;
+		}
+	}
+
+	private void link(int id, int node) {
+		elementNodes[id] = node;
+		elementNext[id] = nodeFirstElements[node];
+		nodeFirstElements[node] = id;
+		nodeElementCounts[node]++;
+	}
+
+	private void unlink(int id) {
+		int node = elementNodes[id];
+		if (nodeFirstElements[node] == id) {
+			nodeFirstElements[node] = elementNext[id];
+		} else {
+			int previous = nodeFirstElements[node];
+			while (elementNext[previous] != id) {
+				previous = elementNext[previous];
+			}
+			elementNext[previous] = elementNext[id];
+		}
+		nodeElementCounts[node]--;
+		for (int current = node; current != NONE; current = nodeParents[current]) {
+			nodeTotalElements[current]--;
+		}
+	}
+
+	private int findLeaf(float elementX, float elementY) {
+		int node = 0;
+		while (nodeChildren[node] != NONE) {
+			node = nodeChildren[node] + getQuadrant(node, elementX, elementY);
+		}
+		return node;
+	}
+
+	private int getQuadrant(int node, float elementX, float elementY) {
+		int result = 0;
+		if (elementX >= nodeBounds[node * 4] + (nodeBounds[node * 4 + 2] / 2f)) {
+			result += 1;
+		}
+		if (elementY >= nodeBounds[node * 4 + 1] + (nodeBounds[node * 4 + 3] / 2f)) {
+			result += 2;
+		}
+		return result;
+	}
+
+	private boolean isWithinRoot(float elementX, float elementY) {
+		return elementX >= nodeBounds[0]
+				&& elementX <= nodeBounds[0] + nodeBounds[2]
+				&& elementY >= nodeBounds[1]
+				&& elementY <= nodeBounds[1] + nodeBounds[3];
+	}
+
+	private boolean overlapsNode(int node, float minX, float minY, float maxX,
+			float maxY) {
+		float x = nodeBounds[node * 4];
+		float y = nodeBounds[node * 4 + 1];
+		return maxX >= x && minX <= x + nodeBounds[node * 4 + 2] && maxY >= y
+				&& minY <= y + nodeBounds[node * 4 + 3];
+	}
+
+	private void initialiseNode(int node, int parent, float x, float y,
+			float width, float height) {
+		nodeBounds[node * 4] = x;
+		nodeBounds[node * 4 + 1] = y;
+		nodeBounds[node * 4 + 2] = width;
+		nodeBounds[node * 4 + 3] = height;
+		nodeParents[node] = parent;
+		nodeChildren[node] = NONE;
+		nodeFirstElements[node] = NONE;
+		nodeElementCounts[node] = 0;
+		nodeTotalElements[node] = 0;
+	}
+
+	private int allocateChildBlock() {
+		totalNodes += 4;
+		if (freeChildBlock != NONE) {
+			int result = freeChildBlock;
+			freeChildBlock = nodeChildren[result];
+			return result;
+		}
+		if (totalNodeSlots + 4 > nodeParents.length) {
+			int capacity = nodeParents.length * 2;
+			nodeBounds = Arrays.copyOf(nodeBounds, capacity * 4);
+			nodeParents = Arrays.copyOf(nodeParents, capacity);
+			nodeChildren = Arrays.copyOf(nodeChildren, capacity);
+			nodeFirstElements = Arrays.copyOf(nodeFirstElements, capacity);
+			nodeElementCounts = Arrays.copyOf(nodeElementCounts, capacity);
+			nodeTotalElements = Arrays.copyOf(nodeTotalElements, capacity);
+		}
+		int result = totalNodeSlots;
+		totalNodeSlots += 4;
+		return result;
+	}
+
+	/**
+	 * Returns a block of four child nodes to the free list, reusing the first
+	 * node's child index as the link to the next free block
+	 */
+	private void freeChildBlock(int children) {
+		totalNodes -= 4;
+		nodeChildren[children] = freeChildBlock;
+		freeChildBlock = children;
+	}
+
+	private int allocateElement() {
+		if (freeElement != NONE) {
+			int result = freeElement;
+			freeElement = elementNext[result];
+			return result;
+		}
+		if (totalElementSlots == elementNodes.length) {
+			int capacity = elementNodes.length * 2;
+			elements = Arrays.copyOf(elements, capacity);
+			elementPositions = Arrays.copyOf(elementPositions, capacity * 2);
+			elementNodes = Arrays.copyOf(elementNodes, capacity);
+			elementNext = Arrays.copyOf(elementNext, capacity);
+		}
+		return totalElementSlots++;
+	}
+
+	private void freeElement(int id) {
+		elements[id] = null;
+		elementNodes[id] = NONE;
+		elementNext[id] = freeElement;
+		freeElement = id;
+	}
+
+	/**
+	 * Returns the number of levels in this tree
+	 * 
+	 * @return 1 if the root has not been subdivided
+	 */
+	public int getDepth() {
+		return getDepth(0);
+	}
+
+	private int getDepth(int node) {
+		if (nodeChildren[node] == NONE) {
+			return 1;
+		}
+		int result = 0;
+		for (int i = 0; i < 4; i++) {
+			result = Math.max(result, getDepth(nodeChildren[node] + i));
+		}
+		return result + 1;
+	}
+
+	/**
+	 * Returns the total number of nodes in this tree, including subdivided
+	 * nodes
+	 * 
+	 * @return 1 if the root has not been subdivided
+	 */
+	public int getTotalNodes() {
+		return totalNodes;
+	}
+
+	public int getTotalElements() {
+		return nodeTotalElements[0];
+	}
+
+	public int getElementLimitPerQuad() {
+		return elementLimitPerQuad;
+	}
+
+	public float getX() {
+		return nodeBounds[0];
+	}
+
+	public float getY() {
+		return nodeBounds[1];
+	}
+
+	public float getWidth() {
+		return nodeBounds[2];
+	}
+
+	public float getHeight() {
+		return nodeBounds[3];
+	}
+}
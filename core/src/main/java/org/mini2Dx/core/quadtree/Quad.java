@@ -11,9 +11,15 @@
  */
 package org.mini2Dx.core.quadtree;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.mini2Dx.core.engine.Parallelogram;
 import org.mini2Dx.core.engine.PositionChangeListener;
@@ -21,6 +27,7 @@ import org.mini2Dx.core.engine.Positionable;
 import org.mini2Dx.core.geom.LineSegment;
 import org.mini2Dx.core.geom.Rectangle;
 import org.mini2Dx.core.graphics.Graphics;
+import org.mini2Dx.core.quadtree.QuadStatistics.QueryType;
 
 import com.badlogic.gdx.graphics.Color;
 
@@ -37,22 +44,44 @@ public class Quad<T extends Positionable> extends Rectangle implements
 	public static Color ELEMENT_COLOR = new Color(0f, 0f, 1f, 0.5f);
 	
 	private static final long serialVersionUID = -2034928347848875105L;
+	private static final int SNAPSHOT_MAGIC = 0x6D325154;
+	private static final int SNAPSHOT_VERSION = 1;
 
 	protected Quad<T> parent;
 	protected Quad<T> topLeft, topRight, bottomLeft, bottomRight;
 	protected List<T> elements;
 	protected int elementLimitPerQuad;
+	protected int mergeWatermark;
+	protected int totalElements;
+	private int totalSplits, totalMerges;
+	protected boolean deferMoves;
+	private List<T> movedElements, flushingElements;
+	private Map<T, Quad<T>> movedElementQuads, flushingElementQuads;
+	private final QuadCounters counters;
 
 	public Quad(int elementLimitPerQuad, float x, float y, float width,
 			float height) {
-		super(x, y, width, height);
-		this.elementLimitPerQuad = elementLimitPerQuad;
-		elements = new ArrayList<T>(elementLimitPerQuad);
+		this(null, elementLimitPerQuad, x, y, width, height);
 	}
 
 	public Quad(Quad<T> parent, float x, float y, float width, float height) {
-		this(parent.getElementLimitPerQuad(), x, y, width, height);
+		this(parent, parent.getElementLimitPerQuad(), x, y, width, height);
+	}
+
+	private Quad(Quad<T> parent, int elementLimitPerQuad, float x, float y,
+			float width, float height) {
+		super(x, y, width, height);
 		this.parent = parent;
+		this.elementLimitPerQuad = elementLimitPerQuad;
+		elements = new ArrayList<T>(elementLimitPerQuad);
+		if (parent == null) {
+			this.mergeWatermark = elementLimitPerQuad / 2;
+			this.counters = new QuadCounters();
+		} else {
+			this.mergeWatermark = parent.getMergeWatermark();
+			this.deferMoves = parent.isDeferMoves();
+			this.counters = parent.counters;
+		}
 	}
 	
 	public void render(Graphics g) {
@@ -82,7 +111,7 @@ public class Quad<T extends Positionable> extends Rectangle implements
 		if (element == null)
 			return false;
 
-		if (!this.contains(element.getX(), element.getY())) {
+		if (!isWithinBounds(element)) {
 			return false;
 		}
 
@@ -95,6 +124,7 @@ public class Quad<T extends Positionable> extends Rectangle implements
 	protected boolean addElement(T element) {
 		elements.add(element);
 		element.addPostionChangeListener(this);
+		updateTotalElements(1);
 
 		if (elements.size() > elementLimitPerQuad && width >= 2f && height >= 2f) {
 			subdivide();
@@ -127,15 +157,511 @@ public class Quad<T extends Positionable> extends Rectangle implements
 		bottomLeft = new Quad<T>(this, x, y + halfHeight, halfWidth, halfHeight);
 		bottomRight = new Quad<T>(this, x + halfWidth, y + halfHeight,
 				halfWidth, halfHeight);
+		recordSplit();
 
 		for (int i = elements.size() - 1; i >= 0; i--) {
 			T element = elements.remove(i);
 			element.removePositionChangeListener(this);
-			addElementToChild(element);
+			updateTotalElements(-1);
+			if (!addElementToChild(element)) {
+				addMovedElementToChild(element);
+			}
 		}
 		elements = null;
 	}
 
+	/**
+	 * Keeps an element that has moved outside of this {@link Quad} before its
+	 * deferred move was flushed. The element is stored in the nearest child
+	 * and relocated by the next call to {@link #flushMoves()}.
+	 * 
+	 * @param element
+	 *            The element that no child {@link Quad} accepted
+	 */
+	private void addMovedElementToChild(T element) {
+		if (!deferMoves) {
+			relocate(element);
+			return;
+		}
+		boolean right = element.getX() >= x + (width / 2f);
+		boolean bottom = element.getY() >= y + (height / 2f);
+		Quad<T> child;
+		if (bottom) {
+			child = right ? bottomRight : bottomLeft;
+		} else {
+			child = right ? topRight : topLeft;
+		}
+		getRoot().recordMove(element, child);
+		child.addElement(element);
+	}
+
+	/**
+	 * Collapses all child {@link Quad}s back into this {@link Quad}
+	 */
+	protected void merge() {
+		if (topLeft == null) {
+			return;
+		}
+		if (elements == null) {
+			elements = new ArrayList<T>(elementLimitPerQuad);
+		}
+		topLeft.mergeInto(this);
+		topRight.mergeInto(this);
+		bottomLeft.mergeInto(this);
+		bottomRight.mergeInto(this);
+		topLeft = null;
+		topRight = null;
+		bottomLeft = null;
+		bottomRight = null;
+		recordMerge();
+	}
+
+	private void mergeInto(Quad<T> target) {
+		if (topLeft != null) {
+			topLeft.mergeInto(target);
+			topRight.mergeInto(target);
+			bottomLeft.mergeInto(target);
+			bottomRight.mergeInto(target);
+		}
+		if (elements == null) {
+			return;
+		}
+		for (int i = elements.size() - 1; i >= 0; i--) {
+			T element = elements.get(i);
+			element.removePositionChangeListener(this);
+			target.elements.add(element);
+			element.addPostionChangeListener(target);
+		}
+		elements = null;
+	}
+
+	/**
+	 * Merges the highest {@link Quad} between this one and the root whose
+	 * total element count has dropped below its merge watermark
+	 */
+	protected void mergeIfRequired() {
+		Quad<T> mergeTarget = null;
+		for (Quad<T> quad = this; quad != null; quad = quad.parent) {
+			if (quad.topLeft != null && quad.totalElements < quad.mergeWatermark) {
+				mergeTarget = quad;
+			}
+		}
+		if (mergeTarget != null) {
+			mergeTarget.merge();
+		}
+	}
+
+	protected void updateTotalElements(int delta) {
+		for (Quad<T> quad = this; quad != null; quad = quad.parent) {
+			quad.totalElements += delta;
+		}
+	}
+
+	protected void recordSplit() {
+		Quad<T> root = getRoot();
+		synchronized (root) {
+			root.totalSplits++;
+		}
+	}
+
+	protected void recordMerge() {
+		Quad<T> root = getRoot();
+		synchronized (root) {
+			root.totalMerges++;
+		}
+	}
+
+	protected Quad<T> getRoot() {
+		Quad<T> result = this;
+		while (result.parent != null) {
+			result = result.parent;
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a batch of elements to this {@link Quad}, building the tree in a
+	 * single top-down pass instead of repeatedly subdividing as
+	 * {@link #add(Positionable)} would. Existing elements are re-packed along
+	 * with the new ones.
+	 * 
+	 * @param elements
+	 *            The elements to add
+	 * @return False if any element was null or outside of this {@link Quad}
+	 */
+	public boolean bulkLoad(Collection<T> elements) {
+		int existingElements = totalElements;
+		Object[] buffer = prepareBulkLoad(elements);
+		bulkLoad(buffer, new Object[buffer.length], new byte[buffer.length],
+				0, buffer.length);
+		finishBulkLoad();
+		return buffer.length - existingElements == elements.size();
+	}
+
+	/**
+	 * Re-packs all elements currently in this {@link Quad} into a freshly
+	 * built tree
+	 */
+	public void rebuild() {
+		bulkLoad(Collections.<T> emptyList());
+	}
+
+	/**
+	 * Writes the structure of this {@link Quad} and its children to a binary
+	 * snapshot. Elements are written as their index in an element table so
+	 * that the tree can be restored with
+	 * {@link #readSnapshot(DataInput, List)} without subdividing or
+	 * re-adding elements.
+	 *
+	 * @param out
+	 *            The {@link DataOutput} to write to
+	 * @param elementTable
+	 *            A {@link List} containing every element in this {@link Quad}
+	 * @throws IOException
+	 *             Thrown if the snapshot could not be written
+	 */
+	public void writeSnapshot(DataOutput out, List<T> elementTable)
+			throws IOException {
+		Map<T, Integer> elementIndices = new IdentityHashMap<T, Integer>();
+		for (int i = 0; i < elementTable.size(); i++) {
+			elementIndices.put(elementTable.get(i), i);
+		}
+		out.writeInt(SNAPSHOT_MAGIC);
+		out.writeInt(SNAPSHOT_VERSION);
+		out.writeFloat(x);
+		out.writeFloat(y);
+		out.writeFloat(width);
+		out.writeFloat(height);
+		out.writeInt(totalElements);
+		writeSnapshotNode(out, elementIndices);
+	}
+
+	private void writeSnapshotNode(DataOutput out,
+			Map<T, Integer> elementIndices) throws IOException {
+		out.writeBoolean(topLeft != null);
+		if (elements == null) {
+			out.writeInt(0);
+		} else {
+			out.writeInt(elements.size());
+			for (int i = 0; i < elements.size(); i++) {
+				Integer index = elementIndices.get(elements.get(i));
+				if (index == null) {
+					throw new IllegalArgumentException(
+							"Element is not in the element table: "
+									+ elements.get(i));
+				}
+				out.writeInt(index);
+			}
+		}
+		if (topLeft != null) {
+			topLeft.writeSnapshotNode(out, elementIndices);
+			topRight.writeSnapshotNode(out, elementIndices);
+			bottomLeft.writeSnapshotNode(out, elementIndices);
+			bottomRight.writeSnapshotNode(out, elementIndices);
+		}
+	}
+
+	/**
+	 * Replaces the contents of this {@link Quad} with a snapshot written by
+	 * {@link #writeSnapshot(DataOutput, List)}. The snapshot is read in a
+	 * single pass. Elements must be at the positions they had when the
+	 * snapshot was written.
+	 *
+	 * @param in
+	 *            The {@link DataInput} to read from
+	 * @param elementTable
+	 *            The element table the snapshot was written with
+	 * @throws IOException
+	 *             Thrown if the snapshot could not be read, does not match
+	 *             the element table or was written from a {@link Quad} with
+	 *             different bounds. This {@link Quad} is left empty.
+	 */
+	public void readSnapshot(DataInput in, List<T> elementTable)
+			throws IOException {
+		if (parent != null) {
+			throw new IllegalStateException(
+					"Snapshots can only be read into a root Quad");
+		}
+		if (in.readInt() != SNAPSHOT_MAGIC) {
+			throw new IOException("Not a Quad snapshot");
+		}
+		int version = in.readInt();
+		if (version != SNAPSHOT_VERSION) {
+			throw new IOException("Unsupported Quad snapshot version "
+					+ version);
+		}
+		float snapshotX = in.readFloat();
+		float snapshotY = in.readFloat();
+		float snapshotWidth = in.readFloat();
+		float snapshotHeight = in.readFloat();
+		if (snapshotX != x || snapshotY != y || snapshotWidth != width
+				|| snapshotHeight != height) {
+			throw new IOException("Snapshot bounds " + snapshotX + ","
+					+ snapshotY + "," + snapshotWidth + "," + snapshotHeight
+					+ " do not match " + x + "," + y + "," + width + ","
+					+ height);
+		}
+		int snapshotElements = in.readInt();
+
+		clear();
+		int splits = totalSplits;
+		try {
+			readSnapshotNode(in, elementTable);
+			if (totalElements != snapshotElements) {
+				throw new IOException("Snapshot contained " + totalElements
+						+ " elements, expected " + snapshotElements);
+			}
+		} catch (IOException e) {
+			discardSnapshot();
+			throw e;
+		} catch (RuntimeException e) {
+			discardSnapshot();
+			throw e;
+		} finally {
+			totalSplits = splits;
+		}
+	}
+
+	/**
+	 * Clears a partially read snapshot. Element counts of the partially read
+	 * nodes have not been propagated yet so the total is reset directly.
+	 */
+	private void discardSnapshot() {
+		clear();
+		totalElements = 0;
+	}
+
+	private void readSnapshotNode(DataInput in, List<T> elementTable)
+			throws IOException {
+		boolean subdivided = in.readBoolean();
+		if (subdivided) {
+			subdivide();
+		}
+		int count = in.readInt();
+		if (count > 0 && elements == null) {
+			throw new IOException(
+					"Snapshot stores elements in a subdivided Quad");
+		}
+		for (int i = 0; i < count; i++) {
+			int index = in.readInt();
+			if (index < 0 || index >= elementTable.size()) {
+				throw new IOException("Snapshot element index " + index
+						+ " is outside of the element table");
+			}
+			T element = elementTable.get(index);
+			if (element == null) {
+				throw new IOException("Snapshot element " + index
+						+ " is null");
+			}
+			if (!isWithinBounds(element)) {
+				throw new IOException("Snapshot element " + index
+						+ " is outside of its Quad");
+			}
+			addBulkLoadedElement(element);
+		}
+		if (subdivided) {
+			topLeft.readSnapshotNode(in, elementTable);
+			topRight.readSnapshotNode(in, elementTable);
+			bottomLeft.readSnapshotNode(in, elementTable);
+			bottomRight.readSnapshotNode(in, elementTable);
+			finishPartitionForBulkLoad();
+		}
+	}
+
+	/**
+	 * Clears this {@link Quad} and returns its previous elements along with
+	 * all valid new elements
+	 */
+	protected Object[] prepareBulkLoad(Collection<T> elements) {
+		List<T> loadedElements = getElements();
+		for (T element : elements) {
+			if (element == null || !isWithinBounds(element)) {
+				continue;
+			}
+			loadedElements.add(element);
+		}
+		clear();
+		return loadedElements.toArray();
+	}
+
+	protected void finishBulkLoad() {
+		if (parent != null) {
+			parent.updateTotalElements(totalElements);
+		}
+	}
+
+	/**
+	 * Builds this {@link Quad} and its children from buffer[from, to)
+	 */
+	protected void bulkLoad(Object[] buffer, Object[] scratch,
+			byte[] quadrants, int from, int to) {
+		int[] offsets = partitionForBulkLoad(buffer, scratch, quadrants, from,
+				to);
+		if (offsets == null) {
+			return;
+		}
+		topLeft.bulkLoad(buffer, scratch, quadrants, from, offsets[0]);
+		topRight.bulkLoad(buffer, scratch, quadrants, offsets[0], offsets[1]);
+		bottomLeft.bulkLoad(buffer, scratch, quadrants, offsets[1], offsets[2]);
+		bottomRight.bulkLoad(buffer, scratch, quadrants, offsets[2], offsets[3]);
+		finishPartitionForBulkLoad();
+	}
+
+	/**
+	 * Stores buffer[from, to) in this {@link Quad} if it is within the element
+	 * limit. Otherwise subdivides and partitions buffer[from, to) by child
+	 * quadrant (a most-significant-digit radix sort on the elements' Z-order
+	 * keys), storing any elements that no child can hold.
+	 * 
+	 * @return The end offset of each child's partition in top-left,
+	 *         top-right, bottom-left, bottom-right order, or null if this
+	 *         {@link Quad} was not subdivided
+	 */
+	@SuppressWarnings("unchecked")
+	protected int[] partitionForBulkLoad(Object[] buffer, Object[] scratch,
+			byte[] quadrants, int from, int to) {
+		if (to - from <= elementLimitPerQuad || width < 2f || height < 2f) {
+			for (int i = from; i < to; i++) {
+				addBulkLoadedElement((T) buffer[i]);
+			}
+			return null;
+		}
+		subdivide();
+
+		int[] offsets = new int[6];
+		for (int i = from; i < to; i++) {
+			quadrants[i] = getBulkLoadQuadrant((T) buffer[i]);
+			offsets[quadrants[i] + 1]++;
+		}
+		offsets[0] = from;
+		for (int i = 1; i < offsets.length; i++) {
+			offsets[i] += offsets[i - 1];
+		}
+		for (int i = from; i < to; i++) {
+			scratch[offsets[quadrants[i]]++] = buffer[i];
+		}
+		System.arraycopy(scratch, from, buffer, from, to - from);
+
+		for (int i = offsets[3]; i < offsets[4]; i++) {
+			addBulkLoadedElement((T) buffer[i]);
+		}
+		return offsets;
+	}
+
+	/**
+	 * Adds the totals of the children built after
+	 * {@link #partitionForBulkLoad(Object[], Object[], byte[], int, int)} to
+	 * this {@link Quad}
+	 */
+	protected void finishPartitionForBulkLoad() {
+		totalElements += topLeft.totalElements + topRight.totalElements
+				+ bottomLeft.totalElements + bottomRight.totalElements;
+	}
+
+	private void addBulkLoadedElement(T element) {
+		elements.add(element);
+		element.addPostionChangeListener(this);
+		totalElements++;
+	}
+
+	/**
+	 * Returns the child quadrant an element belongs to during
+	 * {@link #bulkLoad(Collection)}
+	 * 
+	 * @param element
+	 *            The element to place
+	 * @return 0 to 3 for top-left, top-right, bottom-left and bottom-right, or
+	 *         4 if the element should remain in this {@link Quad}
+	 */
+	protected byte getBulkLoadQuadrant(T element) {
+		if (topLeft.contains(element.getX(), element.getY()))
+			return 0;
+		if (topRight.contains(element.getX(), element.getY()))
+			return 1;
+		if (bottomLeft.contains(element.getX(), element.getY()))
+			return 2;
+		return 3;
+	}
+
+	/**
+	 * Returns if an element can be stored in this {@link Quad}
+	 * 
+	 * @param element
+	 *            The element to test
+	 * @return True if the element is within the bounds of this {@link Quad}
+	 */
+	protected boolean isWithinBounds(T element) {
+		return this.contains(element.getX(), element.getY());
+	}
+
+	/**
+	 * Returns if a {@link LineSegment} crosses or lies inside this
+	 * {@link Quad}
+	 *
+	 * @param lineSegment
+	 *            The {@link LineSegment} to test
+	 * @return False if the {@link LineSegment} is entirely outside this
+	 *         {@link Quad}
+	 */
+	protected boolean isLineSegmentWithinBounds(LineSegment lineSegment) {
+		return this.intersects(lineSegment)
+				|| this.contains(lineSegment.getPointA().getX(), lineSegment
+						.getPointA().getY());
+	}
+
+	/**
+	 * Returns if an element matches a region query
+	 * 
+	 * @param element
+	 *            The element to test
+	 * @param parallelogram
+	 *            The region being searched
+	 * @return True if the element should be included in the results
+	 */
+	protected boolean isElementWithinRegion(T element,
+			Parallelogram parallelogram) {
+		return parallelogram.contains(element.getX(), element.getY());
+	}
+
+	/**
+	 * Returns if an element matches a {@link LineSegment} query
+	 * 
+	 * @param element
+	 *            The element to test
+	 * @param lineSegment
+	 *            The {@link LineSegment} being searched along
+	 * @return True if the element should be included in the results
+	 */
+	protected boolean isElementIntersectingLineSegment(T element,
+			LineSegment lineSegment) {
+		return lineSegment.contains(element.getX(), element.getY());
+	}
+
+	/**
+	 * Removes all elements and child {@link Quad}s from this {@link Quad}
+	 */
+	public void clear() {
+		if (topLeft != null) {
+			topLeft.clear();
+			topRight.clear();
+			bottomLeft.clear();
+			bottomRight.clear();
+			topLeft = null;
+			topRight = null;
+			bottomLeft = null;
+			bottomRight = null;
+		}
+		if (elements == null) {
+			elements = new ArrayList<T>(elementLimitPerQuad);
+			return;
+		}
+		for (int i = elements.size() - 1; i >= 0; i--) {
+			elements.get(i).removePositionChangeListener(this);
+		}
+		updateTotalElements(-elements.size());
+		elements.clear();
+	}
+
 	public boolean remove(T element) {
 		if (element == null)
 			return false;
@@ -147,7 +673,11 @@ public class Quad<T extends Positionable> extends Rectangle implements
 		if (topLeft != null) {
 			return removeElementFromChild(element);
 		}
-		return removeElement(element);
+		if (!removeElement(element)) {
+			return false;
+		}
+		mergeIfRequired();
+		return true;
 	}
 
 	protected boolean removeElementFromChild(T element) {
@@ -163,9 +693,31 @@ public class Quad<T extends Positionable> extends Rectangle implements
 	}
 
 	protected boolean removeElement(T element) {
-		boolean result = elements.remove(element);
+		int index = indexOfElement(element);
 		element.removePositionChangeListener(this);
-		return result;
+		if (index < 0) {
+			return false;
+		}
+		elements.remove(index);
+		updateTotalElements(-1);
+		return true;
+	}
+
+	/**
+	 * Returns the index of an element in this {@link Quad} by identity, as
+	 * value-equal elements may be stored alongside each other
+	 * 
+	 * @param element
+	 *            The element to find
+	 * @return -1 if the element is not stored in this {@link Quad}
+	 */
+	protected int indexOfElement(T element) {
+		for (int i = elements.size() - 1; i >= 0; i--) {
+			if (elements.get(i) == element) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	public List<T> getElementsWithinRegion(Parallelogram parallelogram) {
@@ -176,6 +728,7 @@ public class Quad<T extends Positionable> extends Rectangle implements
 
 	public void getElementsWithinRegion(Collection<T> result,
 			Parallelogram parallelogram) {
+		recordQueryNode(QueryType.REGION, topLeft == null ? elements.size() : 0);
 		if (topLeft != null) {
 			topLeft.getElementsWithinRegion(result, parallelogram);
 			topRight.getElementsWithinRegion(result, parallelogram);
@@ -186,6 +739,36 @@ public class Quad<T extends Positionable> extends Rectangle implements
 				T element = elements.get(i);
 				if (element != null && parallelogram.contains(element.getX(), element.getY())) {
 					result.add(element);
+					recordQueryHits(QueryType.REGION, 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits all elements within a region without allocating a result
+	 * {@link Collection}
+	 * 
+	 * @param visitor
+	 *            The {@link QuadElementVisitor} to call for each matching
+	 *            element
+	 * @param parallelogram
+	 *            The region to search
+	 */
+	public void getElementsWithinRegion(QuadElementVisitor<T> visitor,
+			Parallelogram parallelogram) {
+		recordQueryNode(QueryType.REGION, topLeft == null ? elements.size() : 0);
+		if (topLeft != null) {
+			topLeft.getElementsWithinRegion(visitor, parallelogram);
+			topRight.getElementsWithinRegion(visitor, parallelogram);
+			bottomLeft.getElementsWithinRegion(visitor, parallelogram);
+			bottomRight.getElementsWithinRegion(visitor, parallelogram);
+		} else {
+			for (int i = elements.size() - 1; i >= 0; i--) {
+				T element = elements.get(i);
+				if (element != null && parallelogram.contains(element.getX(), element.getY())) {
+					visitor.visit(element);
+					recordQueryHits(QueryType.REGION, 1);
 				}
 			}
 		}
@@ -199,15 +782,16 @@ public class Quad<T extends Positionable> extends Rectangle implements
 
 	public void getElementsIntersectingLineSegment(Collection<T> result,
 			LineSegment lineSegment) {
+		recordQueryNode(QueryType.LINE_SEGMENT, topLeft == null ? elements.size() : 0);
 		if (topLeft != null) {
-			if (topLeft.intersects(lineSegment))
+			if (topLeft.isLineSegmentWithinBounds(lineSegment))
 				topLeft.getElementsIntersectingLineSegment(result, lineSegment);
-			if (topRight.intersects(lineSegment))
+			if (topRight.isLineSegmentWithinBounds(lineSegment))
 				topRight.getElementsIntersectingLineSegment(result, lineSegment);
-			if (bottomLeft.intersects(lineSegment))
+			if (bottomLeft.isLineSegmentWithinBounds(lineSegment))
 				bottomLeft.getElementsIntersectingLineSegment(result,
 						lineSegment);
-			if (bottomRight.intersects(lineSegment))
+			if (bottomRight.isLineSegmentWithinBounds(lineSegment))
 				bottomRight.getElementsIntersectingLineSegment(result,
 						lineSegment);
 		} else {
@@ -216,6 +800,43 @@ public class Quad<T extends Positionable> extends Rectangle implements
 				if (element != null
 						&& lineSegment.contains(element.getX(), element.getY())) {
 					result.add(element);
+					recordQueryHits(QueryType.LINE_SEGMENT, 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits all elements intersecting a {@link LineSegment} without
+	 * allocating a result {@link Collection}
+	 * 
+	 * @param visitor
+	 *            The {@link QuadElementVisitor} to call for each matching
+	 *            element
+	 * @param lineSegment
+	 *            The {@link LineSegment} to search along
+	 */
+	public void getElementsIntersectingLineSegment(
+			QuadElementVisitor<T> visitor, LineSegment lineSegment) {
+		recordQueryNode(QueryType.LINE_SEGMENT, topLeft == null ? elements.size() : 0);
+		if (topLeft != null) {
+			if (topLeft.isLineSegmentWithinBounds(lineSegment))
+				topLeft.getElementsIntersectingLineSegment(visitor, lineSegment);
+			if (topRight.isLineSegmentWithinBounds(lineSegment))
+				topRight.getElementsIntersectingLineSegment(visitor, lineSegment);
+			if (bottomLeft.isLineSegmentWithinBounds(lineSegment))
+				bottomLeft.getElementsIntersectingLineSegment(visitor,
+						lineSegment);
+			if (bottomRight.isLineSegmentWithinBounds(lineSegment))
+				bottomRight.getElementsIntersectingLineSegment(visitor,
+						lineSegment);
+		} else {
+			for (int i = elements.size() - 1; i >= 0; i--) {
+				T element = elements.get(i);
+				if (element != null
+						&& lineSegment.contains(element.getX(), element.getY())) {
+					visitor.visit(element);
+					recordQueryHits(QueryType.LINE_SEGMENT, 1);
 				}
 			}
 		}
@@ -227,7 +848,14 @@ public class Quad<T extends Positionable> extends Rectangle implements
 		return result;
 	}
 
-	private void getElements(List<T> result) {
+	/**
+	 * Adds all elements in this {@link Quad} to a caller-owned
+	 * {@link Collection}
+	 * 
+	 * @param result
+	 *            The {@link Collection} to add the elements to
+	 */
+	public void getElements(Collection<T> result) {
 		if (topLeft != null) {
 			topLeft.getElements(result);
 			topRight.getElements(result);
@@ -238,6 +866,309 @@ public class Quad<T extends Positionable> extends Rectangle implements
 		}
 	}
 
+	/**
+	 * Visits all elements in this {@link Quad} without allocating a result
+	 * {@link Collection}
+	 * 
+	 * @param visitor
+	 *            The {@link QuadElementVisitor} to call for each element
+	 */
+	public void getElements(QuadElementVisitor<T> visitor) {
+		if (topLeft != null) {
+			topLeft.getElements(visitor);
+			topRight.getElements(visitor);
+			bottomLeft.getElements(visitor);
+			bottomRight.getElements(visitor);
+		} else {
+			for (int i = elements.size() - 1; i >= 0; i--) {
+				visitor.visit(elements.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Returns the element nearest to a coordinate
+	 * 
+	 * @param x
+	 *            The x coordinate
+	 * @param y
+	 *            The y coordinate
+	 * @return Null if this {@link Quad} is empty
+	 */
+	public T getNearest(float x, float y) {
+		T result = getNearest(x, y, null);
+		if (result != null) {
+			recordQueryHits(QueryType.NEAREST, 1);
+		}
+		return result;
+	}
+
+	protected T getNearest(float pointX, float pointY, T nearest) {
+		float nearestDistance = nearest == null ? Float.MAX_VALUE
+				: getDistanceSquared(nearest, pointX, pointY);
+		recordQueryNode(QueryType.NEAREST, elements == null ? 0 : elements.size());
+		if (elements != null) {
+			for (int i = elements.size() - 1; i >= 0; i--) {
+				T element = elements.get(i);
+				float distance = getDistanceSquared(element, pointX, pointY);
+				if (distance < nearestDistance) {
+					nearest = element;
+					nearestDistance = distance;
+				}
+			}
+		}
+		if (topLeft == null) {
+			return nearest;
+		}
+		int visitedChildren = 0;
+		int child;
+		while ((child = getNearestChild(pointX, pointY, visitedChildren,
+				nearestDistance)) >= 0) {
+			visitedChildren |= 1 << child;
+			nearest = getChild(child).getNearest(pointX, pointY, nearest);
+			if (nearest != null) {
+				nearestDistance = getDistanceSquared(nearest, pointX, pointY);
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Returns the k elements nearest to a coordinate
+	 * 
+	 * @param x
+	 *            The x coordinate
+	 * @param y
+	 *            The y coordinate
+	 * @param k
+	 *            The maximum number of elements to return
+	 * @return The nearest elements ordered by distance
+	 */
+	public List<T> getKNearest(float x, float y, int k) {
+		List<T> result = new ArrayList<T>(k);
+		getKNearest(result, x, y, k);
+		return result;
+	}
+
+	/**
+	 * Finds the k elements nearest to a coordinate without allocating
+	 * 
+	 * @param result
+	 *            A caller-owned {@link List} to store the result in. It is
+	 *            cleared before searching.
+	 * @param x
+	 *            The x coordinate
+	 * @param y
+	 *            The y coordinate
+	 * @param k
+	 *            The maximum number of elements to find
+	 */
+	public void getKNearest(List<T> result, float x, float y, int k) {
+		result.clear();
+		if (k <= 0) {
+			return;
+		}
+		getKNearest(result, x, y, k, Float.MAX_VALUE);
+		recordQueryHits(QueryType.NEAREST, result.size());
+	}
+
+	protected float getKNearest(List<T> result, float pointX, float pointY,
+			int k, float maxDistance) {
+		recordQueryNode(QueryType.NEAREST, elements == null ? 0 : elements.size());
+		if (elements != null) {
+			for (int i = elements.size() - 1; i >= 0; i--) {
+				T element = elements.get(i);
+				float distance = getDistanceSquared(element, pointX, pointY);
+				if (distance >= maxDistance && result.size() >= k) {
+					continue;
+				}
+				int index = result.size();
+				while (index > 0
+						&& getDistanceSquared(result.get(index - 1), pointX,
+								pointY) > distance) {
+					index--;
+				}
+				result.add(index, element);
+				if (result.size() > k) {
+					result.remove(k);
+				}
+				if (result.size() == k) {
+					maxDistance = getDistanceSquared(result.get(k - 1),
+							pointX, pointY);
+				}
+			}
+		}
+		if (topLeft == null) {
+			return maxDistance;
+		}
+		int visitedChildren = 0;
+		int child;
+		while ((child = getNearestChild(pointX, pointY, visitedChildren,
+				maxDistance)) >= 0) {
+			visitedChildren |= 1 << child;
+			maxDistance = getChild(child).getKNearest(result, pointX, pointY,
+					k, maxDistance);
+		}
+		return maxDistance;
+	}
+
+	/**
+	 * Returns all elements within a radius of a coordinate
+	 * 
+	 * @param x
+	 *            The x coordinate
+	 * @param y
+	 *            The y coordinate
+	 * @param radius
+	 *            The radius to search
+	 * @return An empty {@link List} if no elements are within the radius
+	 */
+	public List<T> getElementsWithinRadius(float x, float y, float radius) {
+		List<T> result = new ArrayList<T>();
+		getElementsWithinRadius(result, x, y, radius);
+		return result;
+	}
+
+	/**
+	 * Adds all elements within a radius of a coordinate to a caller-owned
+	 * {@link Collection}
+	 * 
+	 * @param result
+	 *            The {@link Collection} to add the elements to
+	 * @param x
+	 *            The x coordinate
+	 * @param y
+	 *            The y coordinate
+	 * @param radius
+	 *            The radius to search
+	 */
+	public void getElementsWithinRadius(Collection<T> result, float x,
+			float y, float radius) {
+		float radiusSquared = radius * radius;
+		recordQueryNode(QueryType.RADIUS, elements == null ? 0 : elements.size());
+		if (elements != null) {
+			for (int i = elements.size() - 1; i >= 0; i--) {
+				T element = elements.get(i);
+				if (getDistanceSquared(element, x, y) <= radiusSquared) {
+					result.add(element);
+					recordQueryHits(QueryType.RADIUS, 1);
+				}
+			}
+		}
+		if (topLeft == null) {
+			return;
+		}
+		if (topLeft.getBoundsDistanceSquared(x, y) <= radiusSquared)
+			topLeft.getElementsWithinRadius(result, x, y, radius);
+		if (topRight.getBoundsDistanceSquared(x, y) <= radiusSquared)
+			topRight.getElementsWithinRadius(result, x, y, radius);
+		if (bottomLeft.getBoundsDistanceSquared(x, y) <= radiusSquared)
+			bottomLeft.getElementsWithinRadius(result, x, y, radius);
+		if (bottomRight.getBoundsDistanceSquared(x, y) <= radiusSquared)
+			bottomRight.getElementsWithinRadius(result, x, y, radius);
+	}
+
+	/**
+	 * Visits all elements within a radius of a coordinate without allocating
+	 * a result {@link Collection}
+	 * 
+	 * @param visitor
+	 *            The {@link QuadElementVisitor} to call for each matching
+	 *            element
+	 * @param x
+	 *            The x coordinate
+	 * @param y
+	 *            The y coordinate
+	 * @param radius
+	 *            The radius to search
+	 */
+	public void getElementsWithinRadius(QuadElementVisitor<T> visitor,
+			float x, float y, float radius) {
+		float radiusSquared = radius * radius;
+		recordQueryNode(QueryType.RADIUS, elements == null ? 0 : elements.size());
+		if (elements != null) {
+			for (int i = elements.size() - 1; i >= 0; i--) {
+				T element = elements.get(i);
+				if (getDistanceSquared(element, x, y) <= radiusSquared) {
+					visitor.visit(element);
+					recordQueryHits(QueryType.RADIUS, 1);
+				}
+			}
+		}
+		if (topLeft == null) {
+			return;
+		}
+		if (topLeft.getBoundsDistanceSquared(x, y) <= radiusSquared)
+			topLeft.getElementsWithinRadius(visitor, x, y, radius);
+		if (topRight.getBoundsDistanceSquared(x, y) <= radiusSquared)
+			topRight.getElementsWithinRadius(visitor, x, y, radius);
+		if (bottomLeft.getBoundsDistanceSquared(x, y) <= radiusSquared)
+			bottomLeft.getElementsWithinRadius(visitor, x, y, radius);
+		if (bottomRight.getBoundsDistanceSquared(x, y) <= radiusSquared)
+			bottomRight.getElementsWithinRadius(visitor, x, y, radius);
+	}
+
+	/**
+	 * Returns the index of the closest child not yet visited whose bounds are
+	 * within maxDistance
+	 */
+	private int getNearestChild(float pointX, float pointY,
+			int visitedChildren, float maxDistance) {
+		int result = -1;
+		for (int i = 0; i < 4; i++) {
+			if ((visitedChildren & (1 << i)) != 0) {
+				continue;
+			}
+			float distance = getChild(i).getBoundsDistanceSquared(pointX,
+					pointY);
+			if (distance <= maxDistance) {
+				result = i;
+				maxDistance = distance;
+			}
+		}
+		return result;
+	}
+
+	protected Quad<T> getChild(int index) {
+		switch (index) {
+		case 0:
+			return topLeft;
+		case 1:
+			return topRight;
+		case 2:
+			return bottomLeft;
+		default:
+			return bottomRight;
+		}
+	}
+
+	/**
+	 * Returns the squared distance between a coordinate and the closest point
+	 * within this {@link Quad}
+	 */
+	protected float getBoundsDistanceSquared(float pointX, float pointY) {
+		float distanceX = Math.max(0f, Math.max(x - pointX, pointX - (x + width)));
+		float distanceY = Math.max(0f, Math.max(y - pointY, pointY - (y + height)));
+		return (distanceX * distanceX) + (distanceY * distanceY);
+	}
+
+	/**
+	 * Returns the squared distance between an element and a coordinate
+	 * 
+	 * @param element
+	 *            The element
+	 * @param pointX
+	 *            The x coordinate
+	 * @param pointY
+	 *            The y coordinate
+	 * @return 0 if the element is at the coordinate
+	 */
+	protected float getDistanceSquared(T element, float pointX, float pointY) {
+		float distanceX = element.getX() - pointX;
+		float distanceY = element.getY() - pointY;
+		return (distanceX * distanceX) + (distanceY * distanceY);
+	}
+
 	public int getTotalQuads() {
 		if (topLeft != null) {
 			int result = topLeft.getTotalQuads();
@@ -252,11 +1183,34 @@ public class Quad<T extends Positionable> extends Rectangle implements
 
 	@Override
 	public void positionChanged(T moved) {
-		if (this.contains(moved.getX(), moved.getY()))
+		counters.positionChanges++;
+		if (deferMoves) {
+			getRoot().recordMove(moved, this);
+			return;
+		}
+		if (containsElement(moved))
 			return;
 
 		removeElement(moved);
+		relocate(moved);
+		mergeIfRequired();
+	}
 
+	private synchronized void recordMove(T moved, Quad<T> quad) {
+		if (movedElementQuads.put(moved, quad) == null) {
+			movedElements.add(moved);
+		}
+	}
+
+	/**
+	 * Re-adds an element that has moved outside of this {@link Quad} to the
+	 * nearest parent {@link Quad} that contains it
+	 * 
+	 * @param moved
+	 *            The element that has moved
+	 */
+	protected void relocate(T moved) {
+		counters.relocations++;
 		Quad<T> parentQuad = parent;
 		while (parentQuad != null) {
 			if(parentQuad.add(moved)) {
@@ -264,6 +1218,327 @@ public class Quad<T extends Positionable> extends Rectangle implements
 			}
 			parentQuad = parentQuad.getParent();
 		}
+		counters.elementsLeftBounds++;
+		getRoot().onElementLeftBounds(moved);
+	}
+
+	/**
+	 * Called on the root {@link Quad} when an element has moved outside of
+	 * the tree and has been removed from it
+	 * 
+	 * @param element
+	 *            The element that was removed
+	 */
+	protected void onElementLeftBounds(T element) {
+	}
+
+	/**
+	 * Returns if an element stored in this {@link Quad} is still within its
+	 * bounds
+	 * 
+	 * @param element
+	 *            The element to test
+	 * @return False if the element needs to be relocated
+	 */
+	protected boolean containsElement(T element) {
+		return this.contains(element.getX(), element.getY());
+	}
+
+	/**
+	 * Relocates all elements that have moved since the last call to this
+	 * method. Each element is relocated at most once regardless of how many
+	 * times its position changed. Only required when
+	 * {@link #setDeferMoves(boolean)} is enabled and should be called once per
+	 * update, before any elements are added or removed.
+	 */
+	public void flushMoves() {
+		Quad<T> root = getRoot();
+		if (root != this) {
+			root.flushMoves();
+			return;
+		}
+		synchronized (this) {
+			if (movedElements == null) {
+				return;
+			}
+			/*
+			 * Relocating can subdivide a Quad and record further moves, so
+			 * moves are flushed from a second buffer until none remain
+			 */
+			while (!movedElements.isEmpty()) {
+				List<T> moves = movedElements;
+				Map<T, Quad<T>> moveQuads = movedElementQuads;
+				movedElements = flushingElements;
+				movedElementQuads = flushingElementQuads;
+				flushingElements = moves;
+				flushingElementQuads = moveQuads;
+				flushMoves(moves, moveQuads);
+				moves.clear();
+				moveQuads.clear();
+			}
+		}
+	}
+
+	private void flushMoves(List<T> moves, Map<T, Quad<T>> moveQuads) {
+		for (int i = moves.size() - 1; i >= 0; i--) {
+			T moved = moves.get(i);
+			Quad<T> quad = moveQuads.get(moved);
+			if (quad.elements == null) {
+				quad = findQuadStoring(moved, quad);
+				moveQuads.put(moved, quad);
+			}
+			if (quad == null || quad.containsElement(moved)
+					|| !quad.removeElement(moved)) {
+				moveQuads.put(moved, null);
+			}
+		}
+		for (int i = moves.size() - 1; i >= 0; i--) {
+			T moved = moves.get(i);
+			Quad<T> quad = moveQuads.get(moved);
+			if (quad != null) {
+				quad.relocate(moved);
+			}
+		}
+		for (int i = moves.size() - 1; i >= 0; i--) {
+			Quad<T> quad = moveQuads.get(moves.get(i));
+			if (quad != null && quad.isAttached()) {
+				quad.mergeIfRequired();
+			}
+		}
+	}
+
+	/**
+	 * Removes an element whose move has been recorded but not yet flushed,
+	 * wherever it is currently stored
+	 * 
+	 * @param element
+	 *            The element to remove
+	 * @return False if no move was recorded for the element or it is no
+	 *         longer in this tree
+	 */
+	public boolean removeMovedElement(T element) {
+		Quad<T> root = getRoot();
+		if (root != this) {
+			return root.removeMovedElement(element);
+		}
+		synchronized (this) {
+			if (movedElementQuads == null) {
+				return false;
+			}
+			Quad<T> quad = movedElementQuads.remove(element);
+			if (quad == null) {
+				return false;
+			}
+			for (int i = movedElements.size() - 1; i >= 0; i--) {
+				if (movedElements.get(i) == element) {
+					movedElements.remove(i);
+					break;
+				}
+			}
+			if (quad.elements == null || quad.indexOfElement(element) < 0) {
+				quad = findQuadStoring(element, quad);
+			}
+			if (quad == null || !quad.removeElement(element)) {
+				return false;
+			}
+			quad.mergeIfRequired();
+			return true;
+		}
+	}
+
+	/**
+	 * Finds the {@link Quad} an element is stored in after the {@link Quad} it
+	 * was recorded against has been subdivided or merged
+	 * 
+	 * @param element
+	 *            The element to find
+	 * @param staleQuad
+	 *            The {@link Quad} the element was recorded against
+	 * @return Null if the element is no longer in this tree
+	 */
+	private Quad<T> findQuadStoring(T element, Quad<T> staleQuad) {
+		Quad<T> result = null;
+		if (staleQuad.isAttached()) {
+			result = staleQuad.findNodeStoring(element);
+		}
+		if (result == null) {
+			result = findNodeStoring(element);
+		}
+		return result;
+	}
+
+	private Quad<T> findNodeStoring(T element) {
+		if (elements != null && indexOfElement(element) >= 0) {
+			return this;
+		}
+		if (topLeft == null) {
+			return null;
+		}
+		Quad<T> result = topLeft.findNodeStoring(element);
+		if (result == null) {
+			result = topRight.findNodeStoring(element);
+		}
+		if (result == null) {
+			result = bottomLeft.findNodeStoring(element);
+		}
+		if (result == null) {
+			result = bottomRight.findNodeStoring(element);
+		}
+		return result;
+	}
+
+	private boolean isAttached() {
+		for (Quad<T> quad = this; quad.parent != null; quad = quad.parent) {
+			if (quad.parent.topLeft == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the total number of {@link Quad}s in this tree, including
+	 * {@link Quad}s that have been subdivided
+	 * 
+	 * @return 1 if this {@link Quad} has not been subdivided
+	 */
+	public int getTotalNodes() {
+		if (topLeft != null) {
+			int result = 1;
+			result += topLeft.getTotalNodes();
+			result += topRight.getTotalNodes();
+			result += bottomLeft.getTotalNodes();
+			result += bottomRight.getTotalNodes();
+			return result;
+		}
+		return 1;
+	}
+
+	/**
+	 * Returns the number of levels in this tree
+	 * 
+	 * @return 1 if this {@link Quad} has not been subdivided
+	 */
+	public int getDepth() {
+		if (topLeft != null) {
+			int result = topLeft.getDepth();
+			result = Math.max(result, topRight.getDepth());
+			result = Math.max(result, bottomLeft.getDepth());
+			result = Math.max(result, bottomRight.getDepth());
+			return result + 1;
+		}
+		return 1;
+	}
+
+	/**
+	 * Returns the total number of elements in this {@link Quad} and its
+	 * children
+	 * 
+	 * @return 0 if empty
+	 */
+	public int getTotalElements() {
+		return totalElements;
+	}
+
+	/**
+	 * Returns the number of subdivisions that have occurred in this tree since
+	 * the last call to {@link #resetSplitAndMergeCounts()}
+	 * 
+	 * @return 0 if no subdivisions have occurred
+	 */
+	public int getTotalSplits() {
+		return getRoot().totalSplits;
+	}
+
+	/**
+	 * Returns the number of merges that have occurred in this tree since the
+	 * last call to {@link #resetSplitAndMergeCounts()}
+	 * 
+	 * @return 0 if no merges have occurred
+	 */
+	public int getTotalMerges() {
+		return getRoot().totalMerges;
+	}
+
+	/**
+	 * Resets the split and merge counters, e.g. at the start of each frame
+	 */
+	public void resetSplitAndMergeCounts() {
+		Quad<T> root = getRoot();
+		root.totalSplits = 0;
+		root.totalMerges = 0;
+	}
+
+	/**
+	 * Returns a snapshot of the structure of this tree and of the queries and
+	 * relocations performed since the last call to {@link #resetStatistics()}
+	 * 
+	 * @return A new {@link QuadStatistics} instance
+	 */
+	public QuadStatistics getStatistics() {
+		QuadStatistics result = new QuadStatistics();
+		getStatistics(result);
+		return result;
+	}
+
+	/**
+	 * Stores a snapshot of the structure of this tree and of the queries and
+	 * relocations performed since the last call to {@link #resetStatistics()}
+	 * 
+	 * @param result
+	 *            The {@link QuadStatistics} to store the snapshot in
+	 */
+	public void getStatistics(QuadStatistics result) {
+		Quad<T> root = getRoot();
+		result.clearStructure();
+		root.recordStructure(result, 0);
+		result.copyCounters(counters);
+		result.totalSplits = root.totalSplits;
+		result.totalMerges = root.totalMerges;
+	}
+
+	private void recordStructure(QuadStatistics result, int depth) {
+		result.recordNode(depth, elements == null ? 0 : elements.size(),
+				topLeft == null);
+		if (topLeft != null) {
+			topLeft.recordStructure(result, depth + 1);
+			topRight.recordStructure(result, depth + 1);
+			bottomLeft.recordStructure(result, depth + 1);
+			bottomRight.recordStructure(result, depth + 1);
+		}
+	}
+
+	/**
+	 * Resets the query and relocation counters of this tree, e.g. at the
+	 * start of each frame
+	 */
+	public void resetStatistics() {
+		counters.reset();
+	}
+
+	/**
+	 * Counts a {@link Quad} searched by a query. Queries made on the root
+	 * {@link Quad} are also counted.
+	 * 
+	 * @param type
+	 *            The type of query
+	 * @param candidates
+	 *            The number of elements in this {@link Quad} the query tests
+	 */
+	protected void recordQueryNode(QueryType type, int candidates) {
+		counters.recordNode(type, parent == null, candidates);
+	}
+
+	/**
+	 * Counts elements returned by a query
+	 * 
+	 * @param type
+	 *            The type of query
+	 * @param hits
+	 *            The number of elements returned
+	 */
+	protected void recordQueryHits(QueryType type, int hits) {
+		counters.recordHits(type, hits);
 	}
 
 	public Quad<T> getParent() {
@@ -273,4 +1548,83 @@ public class Quad<T extends Positionable> extends Rectangle implements
 	public int getElementLimitPerQuad() {
 		return elementLimitPerQuad;
 	}
+
+	/**
+	 * Returns if there are recorded moves waiting for {@link #flushMoves()}
+	 * 
+	 * @return False if deferred moves are disabled or no elements have moved
+	 */
+	public boolean hasDeferredMoves() {
+		Quad<T> root = getRoot();
+		synchronized (root) {
+			return root.movedElements != null && !root.movedElements.isEmpty();
+		}
+	}
+
+	public boolean isDeferMoves() {
+		return deferMoves;
+	}
+
+	/**
+	 * Sets if element position changes are relocated immediately (the
+	 * default) or recorded and relocated on the next call to
+	 * {@link #flushMoves()}. Deferring avoids relocating an element several
+	 * times when it moves more than once per update.
+	 * 
+	 * @param deferMoves
+	 *            True if relocations should be deferred until
+	 *            {@link #flushMoves()}
+	 */
+	public void setDeferMoves(boolean deferMoves) {
+		Quad<T> root = getRoot();
+		if (root != this) {
+			root.setDeferMoves(deferMoves);
+			return;
+		}
+		if (deferMoves && movedElements == null) {
+			movedElements = new ArrayList<T>();
+			movedElementQuads = new IdentityHashMap<T, Quad<T>>();
+			flushingElements = new ArrayList<T>();
+			flushingElementQuads = new IdentityHashMap<T, Quad<T>>();
+		}
+		if (!deferMoves) {
+			flushMoves();
+		}
+		propagateDeferMoves(deferMoves);
+	}
+
+	private void propagateDeferMoves(boolean deferMoves) {
+		this.deferMoves = deferMoves;
+		if (topLeft != null) {
+			topLeft.propagateDeferMoves(deferMoves);
+			topRight.propagateDeferMoves(deferMoves);
+			bottomLeft.propagateDeferMoves(deferMoves);
+			bottomRight.propagateDeferMoves(deferMoves);
+		}
+	}
+
+	public int getMergeWatermark() {
+		return mergeWatermark;
+	}
+
+	/**
+	 * Sets the total element count below which a subdivided {@link Quad} is
+	 * merged back into a single {@link Quad}. Keeping this below
+	 * elementLimitPerQuad avoids repeated splitting and merging of
+	 * {@link Quad}s whose element count hovers around the limit. Defaults to
+	 * half of elementLimitPerQuad.
+	 * 
+	 * @param mergeWatermark
+	 *            A value between 0 (never merge) and elementLimitPerQuad
+	 *            (inclusive)
+	 */
+	public void setMergeWatermark(int mergeWatermark) {
+		this.mergeWatermark = Math.max(0, Math.min(mergeWatermark, elementLimitPerQuad));
+		if (topLeft != null) {
+			topLeft.setMergeWatermark(mergeWatermark);
+			topRight.setMergeWatermark(mergeWatermark);
+			bottomLeft.setMergeWatermark(mergeWatermark);
+			bottomRight.setMergeWatermark(mergeWatermark);
+		}
+	}
 }
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.io.Serializable;
+
+import org.mini2Dx.core.quadtree.QuadStatistics.QueryType;
+
+/**
+ * Running query and relocation counters shared by every {@link Quad} in a
+ * tree. Counters are not synchronized so concurrent queries may undercount.
+ */
+class QuadCounters implements Serializable {
+	private static final long serialVersionUID = -4937519043457226158L;
+
+	final int[] queries = new int[QueryType.values().length];
+	final int[] visitedNodes = new int[queries.length];
+	final int[] candidates = new int[queries.length];
+	final int[] hits = new int[queries.length];
+	int positionChanges;
+	int relocations;
+	int elementsLeftBounds;
+
+	void recordNode(QueryType type, boolean root, int candidates) {
+		int index = type.ordinal();
+		if (root) {
+			queries[index]++;
+		}
+		visitedNodes[index]++;
+		this.candidates[index] += candidates;
+	}
+
+	void recordHits(QueryType type, int hits) {
+		this.hits[type.ordinal()] += hits;
+	}
+
+	void reset() {
+		for (int i = 0; i < queries.length; i++) {
+			queries[i] = 0;
+			visitedNodes[i] = 0;
+			candidates[i] = 0;
+			hits[i] = 0;
+		}
+		positionChanges = 0;
+		relocations = 0;
+		elementsLeftBounds = 0;
+	}
+}
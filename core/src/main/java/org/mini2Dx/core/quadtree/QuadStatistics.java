@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+/**
+ * A snapshot of the structure of a {@link Quad} tree and of the queries and
+ * relocations it has performed since its statistics were last reset
+ */
+public class QuadStatistics {
+	/**
+	 * The types of query that are counted
+	 */
+	public enum QueryType {
+		REGION, LINE_SEGMENT, NEAREST, RADIUS, RAYCAST
+	}
+
+	int totalNodes, totalLeaves, depth;
+	int[] depthHistogram = new int[8];
+	int totalElements, internalElements;
+	int minLeafElements, maxLeafElements;
+	final int[] queries = new int[QueryType.values().length];
+	final int[] visitedNodes = new int[queries.length];
+	final int[] candidates = new int[queries.length];
+	final int[] hits = new int[queries.length];
+	int positionChanges, relocations, elementsLeftBounds;
+	int totalSplits, totalMerges;
+
+	void clearStructure() {
+		totalNodes = 0;
+		totalLeaves = 0;
+		depth = 0;
+		for (int i = 0; i < depthHistogram.length; i++) {
+			depthHistogram[i] = 0;
+		}
+		totalElements = 0;
+		internalElements = 0;
+		minLeafElements = Integer.MAX_VALUE;
+		maxLeafElements = 0;
+	}
+
+	void recordNode(int nodeDepth, int elements, boolean leaf) {
+		if (nodeDepth >= depthHistogram.length) {
+			int[] histogram = new int[Math.max(nodeDepth + 1,
+					depthHistogram.length * 2)];
+			System.arraycopy(depthHistogram, 0, histogram, 0,
+					depthHistogram.length);
+			depthHistogram = histogram;
+		}
+		depthHistogram[nodeDepth]++;
+		depth = Math.max(depth, nodeDepth + 1);
+		totalNodes++;
+		totalElements += elements;
+		if (!leaf) {
+			internalElements += elements;
+			return;
+		}
+		totalLeaves++;
+		minLeafElements = Math.min(minLeafElements, elements);
+		maxLeafElements = Math.max(maxLeafElements, elements);
+	}
+
+	void copyCounters(QuadCounters counters) {
+		System.arraycopy(counters.queries, 0, queries, 0, queries.length);
+		System.arraycopy(counters.visitedNodes, 0, visitedNodes, 0,
+				visitedNodes.length);
+		System.arraycopy(counters.candidates, 0, candidates, 0,
+				candidates.length);
+		System.arraycopy(counters.hits, 0, hits, 0, hits.length);
+		positionChanges = counters.positionChanges;
+		relocations = counters.relocations;
+		elementsLeftBounds = counters.elementsLeftBounds;
+	}
+
+	/**
+	 * Returns the total number of {@link Quad}s, including subdivided ones
+	 */
+	public int getTotalNodes() {
+		return totalNodes;
+	}
+
+	/**
+	 * Returns the number of {@link Quad}s that have not been subdivided
+	 */
+	public int getTotalLeaves() {
+		return totalLeaves;
+	}
+
+	/**
+	 * Returns the number of levels in the tree
+	 * 
+	 * @return 1 if the root has not been subdivided
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns the number of {@link Quad}s at a depth
+	 * 
+	 * @param depth
+	 *            The depth, where 0 is the root
+	 * @return 0 if the tree is not that deep
+	 */
+	public int getNodesAtDepth(int depth) {
+		if (depth < 0 || depth >= depthHistogram.length) {
+			return 0;
+		}
+		return depthHistogram[depth];
+	}
+
+	public int getTotalElements() {
+		return totalElements;
+	}
+
+	/**
+	 * Returns the number of elements stored in subdivided {@link Quad}s, e.g.
+	 * elements in a {@link RegionQuad} that no child fully contains
+	 */
+	public int getInternalElements() {
+		return internalElements;
+	}
+
+	public int getMinLeafElements() {
+		return totalLeaves == 0 ? 0 : minLeafElements;
+	}
+
+	public int getMaxLeafElements() {
+		return maxLeafElements;
+	}
+
+	public float getAverageLeafElements() {
+		if (totalLeaves == 0) {
+			return 0f;
+		}
+		return (totalElements - internalElements) / (float) totalLeaves;
+	}
+
+	/**
+	 * Returns the number of queries of a type made on the root {@link Quad}
+	 */
+	public int getQueries(QueryType type) {
+		return queries[type.ordinal()];
+	}
+
+	/**
+	 * Returns the number of {@link Quad}s searched by queries of a type
+	 */
+	public int getVisitedNodes(QueryType type) {
+		return visitedNodes[type.ordinal()];
+	}
+
+	/**
+	 * Returns the number of elements tested by queries of a type
+	 */
+	public int getCandidates(QueryType type) {
+		return candidates[type.ordinal()];
+	}
+
+	/**
+	 * Returns the number of elements returned by queries of a type
+	 */
+	public int getHits(QueryType type) {
+		return hits[type.ordinal()];
+	}
+
+	/**
+	 * Returns the number of elements tested for each element returned by
+	 * queries of a type. Values much larger than 1 suggest the tree is too
+	 * shallow or elements are stuck in subdivided {@link Quad}s.
+	 * 
+	 * @return 0 if no elements were returned
+	 */
+	public float getCandidateToHitRatio(QueryType type) {
+		int index = type.ordinal();
+		if (hits[index] == 0) {
+			return 0f;
+		}
+		return candidates[index] / (float) hits[index];
+	}
+
+	/**
+	 * Returns the number of element position changes received
+	 */
+	public int getPositionChanges() {
+		return positionChanges;
+	}
+
+	/**
+	 * Returns the number of times a moved element had to be relocated to
+	 * another {@link Quad}
+	 */
+	public int getRelocations() {
+		return relocations;
+	}
+
+	/**
+	 * Returns the number of elements removed because they moved outside of
+	 * the tree
+	 */
+	public int getElementsLeftBounds() {
+		return elementsLeftBounds;
+	}
+
+	public int getTotalSplits() {
+		return totalSplits;
+	}
+
+	public int getTotalMerges() {
+		return totalMerges;
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import org.mini2Dx.core.engine.Positionable;
+
+/**
+ * Stores where a {@link org.mini2Dx.core.geom.LineSegment} cast through a {@link RegionQuad} first
+ * touches an element
+ */
+public class RaycastHit<T extends Positionable> implements Comparable<RaycastHit<T>> {
+	private T element;
+	private float distance;
+	private float x, y;
+
+	/**
+	 * Sets the values of this {@link RaycastHit}
+	 * 
+	 * @param element
+	 *            The element that was hit
+	 * @param distance
+	 *            The distance from the start of the ray to the hit point
+	 * @param x
+	 *            The x coordinate of the hit point
+	 * @param y
+	 *            The y coordinate of the hit point
+	 */
+	public void set(T element, float distance, float x, float y) {
+		this.element = element;
+		this.distance = distance;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Clears the values of this {@link RaycastHit}
+	 */
+	public void clear() {
+		set(null, 0f, 0f, 0f);
+	}
+
+	@Override
+	public int compareTo(RaycastHit<T> hit) {
+		return Float.compare(distance, hit.distance);
+	}
+
+	public T getElement() {
+		return element;
+	}
+
+	public float getDistance() {
+		return distance;
+	}
+
+	public float getX() {
+		return x;
+	}
+
+	public float getY() {
+		return y;
+	}
+
+	@Override
+	public String toString() {
+		return "RaycastHit [element=" + element + ", distance=" + distance
+				+ ", x=" + x + ", y=" + y + "]";
+	}
+}
@@ -13,11 +13,14 @@ package org.mini2Dx.core.quadtree;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.mini2Dx.core.engine.Parallelogram;
 import org.mini2Dx.core.geom.LineSegment;
+import org.mini2Dx.core.geom.Rectangle;
 import org.mini2Dx.core.graphics.Graphics;
+import org.mini2Dx.core.quadtree.QuadStatistics.QueryType;
 
 import com.badlogic.gdx.graphics.Color;
 
@@ -67,7 +70,7 @@ public class RegionQuad<T extends Parallelogram> extends Quad<T> {
         if (element == null)
             return false;
 
-        if (!this.intersects(element) && !this.contains(element)) {
+        if (!isWithinBounds(element)) {
             return false;
         }
 
@@ -112,6 +115,7 @@ public class RegionQuad<T extends Parallelogram> extends Quad<T> {
         topRight = new RegionQuad<T>(this, x + halfWidth, y, halfWidth, halfHeight);
         bottomLeft = new RegionQuad<T>(this, x, y + halfHeight, halfWidth, halfHeight);
         bottomRight = new RegionQuad<T>(this, x + halfWidth, y + halfHeight, halfWidth, halfHeight);
+        recordSplit();
 
         for (int i = elements.size() - 1; i >= 0; i--) {
             if (addElementToChild(elements.get(i))) {
@@ -120,6 +124,34 @@ public class RegionQuad<T extends Parallelogram> extends Quad<T> {
         }
     }
 
+    @Override
+    protected byte getBulkLoadQuadrant(T element) {
+        if (topLeft.contains(element))
+            return 0;
+        if (topRight.contains(element))
+            return 1;
+        if (bottomLeft.contains(element))
+            return 2;
+        if (bottomRight.contains(element))
+            return 3;
+        return 4;
+    }
+
+    @Override
+    protected boolean isWithinBounds(T element) {
+        return this.intersects(element) || this.contains(element);
+    }
+
+    @Override
+    protected boolean isElementWithinRegion(T element, Parallelogram parallelogram) {
+        return parallelogram.contains(element) || parallelogram.intersects(element);
+    }
+
+    @Override
+    protected boolean isElementIntersectingLineSegment(T element, LineSegment lineSegment) {
+        return element.intersects(lineSegment);
+    }
+
     @Override
     public boolean remove(T element) {
         if (element == null)
@@ -130,6 +162,7 @@ public class RegionQuad<T extends Parallelogram> extends Quad<T> {
         }
 
         if (removeElement(element)) {
+            mergeIfRequired();
             return true;
         }
         if (topLeft == null) {
@@ -147,6 +180,7 @@ public class RegionQuad<T extends Parallelogram> extends Quad<T> {
 
     @Override
     public void getElementsWithinRegion(Collection<T> result, Parallelogram parallelogram) {
+        recordQueryNode(QueryType.REGION, elements.size());
         if (topLeft != null) {
             if (topLeft.contains(parallelogram) || topLeft.intersects(parallelogram))
                 topLeft.getElementsWithinRegion(result, parallelogram);
@@ -163,6 +197,31 @@ public class RegionQuad<T extends Parallelogram> extends Quad<T> {
                 continue;
             if (parallelogram.contains(element) || parallelogram.intersects(element)) {
                 result.add(element);
+                recordQueryHits(QueryType.REGION, 1);
+            }
+        }
+    }
+
+    @Override
+    public void getElementsWithinRegion(QuadElementVisitor<T> visitor, Parallelogram parallelogram) {
+        recordQueryNode(QueryType.REGION, elements.size());
+        if (topLeft != null) {
+            if (topLeft.contains(parallelogram) || topLeft.intersects(parallelogram))
+                topLeft.getElementsWithinRegion(visitor, parallelogram);
+            if (topRight.contains(parallelogram) || topRight.intersects(parallelogram))
+                topRight.getElementsWithinRegion(visitor, parallelogram);
+            if (bottomLeft.contains(parallelogram) || bottomLeft.intersects(parallelogram))
+                bottomLeft.getElementsWithinRegion(visitor, parallelogram);
+            if (bottomRight.contains(parallelogram) || bottomRight.intersects(parallelogram))
+                bottomRight.getElementsWithinRegion(visitor, parallelogram);
+        }
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            T element = elements.get(i);
+            if (element == null)
+                continue;
+            if (parallelogram.contains(element) || parallelogram.intersects(element)) {
+                visitor.visit(element);
+                recordQueryHits(QueryType.REGION, 1);
             }
         }
     }
@@ -176,20 +235,44 @@ public class RegionQuad<T extends Parallelogram> extends Quad<T> {
 
     @Override
     public void getElementsIntersectingLineSegment(Collection<T> result, LineSegment lineSegment) {
+        recordQueryNode(QueryType.LINE_SEGMENT, elements.size());
         if (topLeft != null) {
-            if (topLeft.intersects(lineSegment))
+            if (topLeft.isLineSegmentWithinBounds(lineSegment))
                 topLeft.getElementsIntersectingLineSegment(result, lineSegment);
-            if (topRight.intersects(lineSegment))
+            if (topRight.isLineSegmentWithinBounds(lineSegment))
                 topRight.getElementsIntersectingLineSegment(result, lineSegment);
-            if (bottomLeft.intersects(lineSegment))
+            if (bottomLeft.isLineSegmentWithinBounds(lineSegment))
                 bottomLeft.getElementsIntersectingLineSegment(result, lineSegment);
-            if (bottomRight.intersects(lineSegment))
+            if (bottomRight.isLineSegmentWithinBounds(lineSegment))
                 bottomRight.getElementsIntersectingLineSegment(result, lineSegment);
         }
         for (int i = elements.size() - 1; i >= 0; i--) {
             T element = elements.get(i);
             if (element != null && element.intersects(lineSegment)) {
                 result.add(element);
+                recordQueryHits(QueryType.LINE_SEGMENT, 1);
+            }
+        }
+    }
+
+    @Override
+    public void getElementsIntersectingLineSegment(QuadElementVisitor<T> visitor, LineSegment lineSegment) {
+        recordQueryNode(QueryType.LINE_SEGMENT, elements.size());
+        if (topLeft != null) {
+            if (topLeft.isLineSegmentWithinBounds(lineSegment))
+                topLeft.getElementsIntersectingLineSegment(visitor, lineSegment);
+            if (topRight.isLineSegmentWithinBounds(lineSegment))
+                topRight.getElementsIntersectingLineSegment(visitor, lineSegment);
+            if (bottomLeft.isLineSegmentWithinBounds(lineSegment))
+                bottomLeft.getElementsIntersectingLineSegment(visitor, lineSegment);
+            if (bottomRight.isLineSegmentWithinBounds(lineSegment))
+                bottomRight.getElementsIntersectingLineSegment(visitor, lineSegment);
+        }
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            T element = elements.get(i);
+            if (element != null && element.intersects(lineSegment)) {
+                visitor.visit(element);
+                recordQueryHits(QueryType.LINE_SEGMENT, 1);
             }
         }
     }
@@ -198,32 +281,345 @@ public class RegionQuad<T extends Parallelogram> extends Quad<T> {
     public List<T> getElements() {
         List<T> result = new ArrayList<T>();
         getElements(result);
-        return new ArrayList<T>(result);
+        return result;
     }
 
-    private void getElements(List<T> result) {
+    @Override
+    public void getElements(Collection<T> result) {
         if (topLeft != null) {
-            ((RegionQuad<T>) topLeft).getElements(result);
-            ((RegionQuad<T>) topRight).getElements(result);
-            ((RegionQuad<T>) bottomLeft).getElements(result);
-            ((RegionQuad<T>) bottomRight).getElements(result);
+            topLeft.getElements(result);
+            topRight.getElements(result);
+            bottomLeft.getElements(result);
+            bottomRight.getElements(result);
         }
         result.addAll(elements);
     }
 
     @Override
-    public void positionChanged(T moved) {
-        if (this.contains(moved))
+    public void getElements(QuadElementVisitor<T> visitor) {
+        if (topLeft != null) {
+            topLeft.getElements(visitor);
+            topRight.getElements(visitor);
+            bottomLeft.getElements(visitor);
+            bottomRight.getElements(visitor);
+        }
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            visitor.visit(elements.get(i));
+        }
+    }
+
+    /**
+     * Reports each pair of intersecting elements exactly once in a single pass
+     * over the tree. Elements are tested against elements in the same quad,
+     * in descendant quads and in sibling quads whose bounds they touch, so
+     * elements that only touch along the shared edge of two sibling quads are
+     * also reported.
+     *
+     * @param callback
+     *            The {@link PairCallback} to report pairs to
+     */
+    public void forEachOverlappingPair(PairCallback<T> callback) {
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            T element = elements.get(i);
+            for (int j = i - 1; j >= 0; j--) {
+                T other = elements.get(j);
+                if (element.intersects(other)) {
+                    callback.onPair(element, other);
+                }
+            }
+            if (topLeft == null) {
+                continue;
+            }
+            for (int j = 0; j < 4; j++) {
+                ((RegionQuad<T>) getChild(j)).forEachOverlappingElement(element, callback);
+            }
+        }
+        if (topLeft == null) {
             return;
+        }
+        for (int i = 0; i < 3; i++) {
+            RegionQuad<T> child = (RegionQuad<T>) getChild(i);
+            for (int j = i + 1; j < 4; j++) {
+                RegionQuad<T> sibling = (RegionQuad<T>) getChild(j);
+                if (child.intersects(sibling)) {
+                    child.forEachOverlappingElement(sibling, callback);
+                }
+            }
+            child.forEachOverlappingPair(callback);
+        }
+        ((RegionQuad<T>) getChild(3)).forEachOverlappingPair(callback);
+    }
 
-        removeElement(moved);
+    /**
+     * Tests every element in this quad and its descendants against the
+     * elements of another subtree
+     */
+    private void forEachOverlappingElement(RegionQuad<T> other, PairCallback<T> callback) {
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            other.forEachOverlappingElement(elements.get(i), callback);
+        }
+        if (topLeft == null) {
+            return;
+        }
+        for (int i = 0; i < 4; i++) {
+            RegionQuad<T> child = (RegionQuad<T>) getChild(i);
+            if (child.intersects(other)) {
+                child.forEachOverlappingElement(other, callback);
+            }
+        }
+    }
 
-        Quad<T> parentQuad = parent;
-        while (parentQuad != null) {
-            if (parentQuad.add(moved)) {
-                return;
+    /**
+     * Tests an element against the elements in this quad and its descendants
+     */
+    private void forEachOverlappingElement(T element, PairCallback<T> callback) {
+        if (!intersects(element)) {
+            return;
+        }
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            T other = elements.get(i);
+            if (element.intersects(other)) {
+                callback.onPair(element, other);
+            }
+        }
+        if (topLeft == null) {
+            return;
+        }
+        for (int i = 0; i < 4; i++) {
+            ((RegionQuad<T>) getChild(i)).forEachOverlappingElement(element, callback);
+        }
+    }
+
+    /**
+     * Returns the first element touched by a {@link LineSegment} travelling
+     * from point A to point B
+     *
+     * @param lineSegment
+     *            The {@link LineSegment} to cast
+     * @return Null if no element is touched
+     */
+    public RaycastHit<T> raycastFirst(LineSegment lineSegment) {
+        RaycastHit<T> result = new RaycastHit<T>();
+        if (!raycastFirst(result, lineSegment)) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Stores the first element touched by a {@link LineSegment} travelling
+     * from point A to point B. Children are visited front-to-back and any
+     * child further along the {@link LineSegment} than the closest hit so far
+     * is skipped.
+     *
+     * @param result
+     *            The {@link RaycastHit} to store the result in
+     * @param lineSegment
+     *            The {@link LineSegment} to cast
+     * @return False if no element is touched
+     */
+    public boolean raycastFirst(RaycastHit<T> result, LineSegment lineSegment) {
+        result.clear();
+        float startX = lineSegment.getPointA().getX();
+        float startY = lineSegment.getPointA().getY();
+        float deltaX = lineSegment.getPointB().getX() - startX;
+        float deltaY = lineSegment.getPointB().getY() - startY;
+        float fraction = raycastFirst(result, lineSegment, startX, startY, deltaX, deltaY, Float.MAX_VALUE);
+        if (result.getElement() == null) {
+            return false;
+        }
+        setHit(result, result.getElement(), fraction, startX, startY, deltaX, deltaY);
+        recordQueryHits(QueryType.RAYCAST, 1);
+        return true;
+    }
+
+    /**
+     * Returns all elements touched by a {@link LineSegment} ordered by their
+     * distance from point A
+     *
+     * @param lineSegment
+     *            The {@link LineSegment} to cast
+     * @return An empty {@link List} if no elements are touched
+     */
+    public List<RaycastHit<T>> raycastAll(LineSegment lineSegment) {
+        List<RaycastHit<T>> result = new ArrayList<RaycastHit<T>>();
+        raycastAll(result, lineSegment);
+        return result;
+    }
+
+    /**
+     * Stores all elements touched by a {@link LineSegment} ordered by their
+     * distance from point A
+     *
+     * @param result
+     *            The {@link List} to store the hits in. This is cleared
+     *            before use.
+     * @param lineSegment
+     *            The {@link LineSegment} to cast
+     */
+    public void raycastAll(List<RaycastHit<T>> result, LineSegment lineSegment) {
+        result.clear();
+        float startX = lineSegment.getPointA().getX();
+        float startY = lineSegment.getPointA().getY();
+        float deltaX = lineSegment.getPointB().getX() - startX;
+        float deltaY = lineSegment.getPointB().getY() - startY;
+        raycastAll(result, lineSegment, startX, startY, deltaX, deltaY);
+        Collections.sort(result);
+        recordQueryHits(QueryType.RAYCAST, result.size());
+    }
+
+    private float raycastFirst(RaycastHit<T> result, LineSegment lineSegment, float startX, float startY,
+            float deltaX, float deltaY, float nearestFraction) {
+        recordQueryNode(QueryType.RAYCAST, elements.size());
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            T element = elements.get(i);
+            float fraction = getEntryFraction(element, lineSegment, startX, startY, deltaX, deltaY);
+            if (fraction >= 0f && fraction < nearestFraction) {
+                nearestFraction = fraction;
+                result.set(element, 0f, 0f, 0f);
+            }
+        }
+        if (topLeft == null) {
+            return nearestFraction;
+        }
+        int visitedChildren = 0;
+        int child;
+        while ((child = getNearestChildOnRay(startX, startY, deltaX, deltaY, visitedChildren,
+                nearestFraction)) >= 0) {
+            visitedChildren |= 1 << child;
+            nearestFraction = ((RegionQuad<T>) getChild(child)).raycastFirst(result, lineSegment, startX, startY,
+                    deltaX, deltaY, nearestFraction);
+        }
+        return nearestFraction;
+    }
+
+    private void raycastAll(List<RaycastHit<T>> result, LineSegment lineSegment, float startX, float startY,
+            float deltaX, float deltaY) {
+        recordQueryNode(QueryType.RAYCAST, elements.size());
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            T element = elements.get(i);
+            float fraction = getEntryFraction(element, lineSegment, startX, startY, deltaX, deltaY);
+            if (fraction >= 0f) {
+                RaycastHit<T> hit = new RaycastHit<T>();
+                setHit(hit, element, fraction, startX, startY, deltaX, deltaY);
+                result.add(hit);
             }
-            parentQuad = parentQuad.getParent();
         }
+        if (topLeft == null) {
+            return;
+        }
+        int visitedChildren = 0;
+        int child;
+        while ((child = getNearestChildOnRay(startX, startY, deltaX, deltaY, visitedChildren,
+                Float.MAX_VALUE)) >= 0) {
+            visitedChildren |= 1 << child;
+            ((RegionQuad<T>) getChild(child)).raycastAll(result, lineSegment, startX, startY, deltaX, deltaY);
+        }
+    }
+
+    /**
+     * Returns the index of the unvisited child the ray enters first, ignoring
+     * children entered at or beyond maxFraction
+     */
+    private int getNearestChildOnRay(float startX, float startY, float deltaX, float deltaY, int visitedChildren,
+            float maxFraction) {
+        int result = -1;
+        for (int i = 0; i < 4; i++) {
+            if ((visitedChildren & (1 << i)) != 0) {
+                continue;
+            }
+            Quad<T> child = getChild(i);
+            float fraction = getEntryFraction(startX, startY, deltaX, deltaY, child.getX(), child.getY(),
+                    child.getX() + child.getWidth(), child.getY() + child.getHeight());
+            if (fraction >= 0f && fraction < maxFraction) {
+                result = i;
+                maxFraction = fraction;
+            }
+        }
+        return result;
+    }
+
+    private void setHit(RaycastHit<T> hit, T element, float fraction, float startX, float startY, float deltaX,
+            float deltaY) {
+        float length = (float) Math.sqrt((deltaX * deltaX) + (deltaY * deltaY));
+        hit.set(element, fraction * length, startX + (deltaX * fraction), startY + (deltaY * fraction));
+    }
+
+    /**
+     * Returns how far along a {@link LineSegment} it first touches an element
+     *
+     * @return A value between 0 and 1 or -1 if the element is not touched
+     */
+    protected float getEntryFraction(T element, LineSegment lineSegment, float startX, float startY, float deltaX,
+            float deltaY) {
+        if (element instanceof Rectangle) {
+            return ((Rectangle) element).getLineSegmentEntryFraction(lineSegment);
+        }
+        return getEntryFraction(startX, startY, deltaX, deltaY, element.getMinX(), element.getMinY(),
+                element.getMaxX(), element.getMaxY());
+    }
+
+    /**
+     * Returns how far along a ray it first touches an axis-aligned box
+     *
+     * @return A value between 0 and 1 or -1 if the box is not touched
+     */
+    private static float getEntryFraction(float startX, float startY, float deltaX, float deltaY, float minX,
+            float minY, float maxX, float maxY) {
+        float entry = 0f;
+        float exit = 1f;
+        if (deltaX == 0f) {
+            if (startX < minX || startX > maxX) {
+                return -1f;
+            }
+        } else {
+            float near = (minX - startX) / deltaX;
+            float far = (maxX - startX) / deltaX;
+            if (near > far) {
+                float swap = near;
+                near = far;
+                far = swap;
+            }
+            entry = Math.max(entry, near);
+            exit = Math.min(exit, far);
+            if (entry > exit) {
+                return -1f;
+            }
+        }
+        if (deltaY == 0f) {
+            if (startY < minY || startY > maxY) {
+                return -1f;
+            }
+        } else {
+            float near = (minY - startY) / deltaY;
+            float far = (maxY - startY) / deltaY;
+            if (near > far) {
+                float swap = near;
+                near = far;
+                far = swap;
+            }
+            entry = Math.max(entry, near);
+            exit = Math.min(exit, far);
+            if (entry > exit) {
+                return -1f;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the squared distance between a coordinate and the closest point
+     * of an element's bounds
+     */
+    @Override
+    protected float getDistanceSquared(T element, float pointX, float pointY) {
+        float distanceX = Math.max(0f, Math.max(element.getMinX() - pointX, pointX - element.getMaxX()));
+        float distanceY = Math.max(0f, Math.max(element.getMinY() - pointY, pointY - element.getMaxY()));
+        return (distanceX * distanceX) + (distanceY * distanceY);
+    }
+
+    @Override
+    protected boolean containsElement(T element) {
+        return this.contains(element);
     }
 }
@@ -0,0 +1,435 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mini2Dx.core.engine.Parallelogram;
+import org.mini2Dx.core.engine.PositionChangeListener;
+import org.mini2Dx.core.engine.Positionable;
+import org.mini2Dx.core.geom.LineSegment;
+import org.mini2Dx.core.graphics.Graphics;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.LongMap;
+
+/**
+ * Implements a uniform grid of cells keyed by their packed cell coordinates.
+ * Elements are stored by position in the cell containing their x,y
+ * coordinate. Adding, removing and moving elements does not depend on the
+ * number of elements stored, which suits large numbers of similarly sized,
+ * constantly moving elements better than a {@link Quad}.
+ */
+public class SpatialHash<T extends Positionable> implements
+		PositionChangeListener<T> {
+	private static final int MAX_POOLED_CELLS = 256;
+
+	private final float cellSize;
+	private final float inverseCellSize;
+	private final LongMap<Cell<T>> cells = new LongMap<Cell<T>>();
+	private final Map<T, Cell<T>> elementCells = new IdentityHashMap<T, Cell<T>>();
+	private final List<Cell<T>> cellPool = new ArrayList<Cell<T>>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param cellSize
+	 *            The width and height of each cell. Ideally this is close to
+	 *            the size of the elements or of the typical query region.
+	 */
+	public SpatialHash(float cellSize) {
+		if (cellSize <= 0f) {
+			throw new IllegalArgumentException("cellSize must be greater than 0");
+		}
+		this.cellSize = cellSize;
+		this.inverseCellSize = 1f / cellSize;
+	}
+
+	public void render(Graphics g) {
+		Color tmp = g.getColor();
+
+		g.setColor(Quad.QUAD_COLOR);
+		for (Cell<T> cell : cells.values()) {
+			g.drawRect(cell.cellX * cellSize, cell.cellY * cellSize, cellSize,
+					cellSize);
+		}
+		g.setColor(Quad.ELEMENT_COLOR);
+		for (T element : elementCells.keySet()) {
+			g.fillRect(element.getX(), element.getY(), 1f, 1f);
+		}
+		g.setColor(tmp);
+	}
+
+	public boolean add(T element) {
+		if (element == null)
+			return false;
+		if (elementCells.containsKey(element))
+			return false;
+
+		Cell<T> cell = obtainCell(getCellX(element.getX()),
+				getCellY(element.getY()));
+		cell.elements.add(element);
+		elementCells.put(element, cell);
+		element.addPostionChangeListener(this);
+		return true;
+	}
+
+	public boolean remove(T element) {
+		if (element == null)
+			return false;
+
+		Cell<T> cell = elementCells.remove(element);
+		if (cell == null) {
+			return false;
+		}
+		element.removePositionChangeListener(this);
+		removeFromCell(cell, element);
+		return true;
+	}
+
+	/**
+	 * Removes all elements from this {@link SpatialHash}
+	 */
+	public void clear() {
+		for (T element : elementCells.keySet()) {
+			element.removePositionChangeListener(this);
+		}
+		elementCells.clear();
+		for (Cell<T> cell : cells.values()) {
+			cell.elements.clear();
+			freeCell(cell);
+		}
+		cells.clear();
+	}
+
+	@Override
+	public void positionChanged(T moved) {
+		Cell<T> cell = elementCells.get(moved);
+		if (cell == null) {
+			return;
+		}
+		int cellX = getCellX(moved.getX());
+		int cellY = getCellY(moved.getY());
+		if (cell.cellX == cellX && cell.cellY == cellY) {
+			return;
+		}
+		removeFromCell(cell, moved);
+		cell = obtainCell(cellX, cellY);
+		cell.elements.add(moved);
+		elementCells.put(moved, cell);
+	}
+
+	public List<T> getElementsWithinRegion(Parallelogram parallelogram) {
+		List<T> result = new ArrayList<T>();
+		getElementsWithinRegion(result, parallelogram);
+		return result;
+	}
+
+	public void getElementsWithinRegion(Collection<T> result,
+			Parallelogram parallelogram) {
+		int minCellX = getCellX(parallelogram.getMinX());
+		int minCellY = getCellY(parallelogram.getMinY());
+		int maxCellX = getCellX(parallelogram.getMaxX());
+		int maxCellY = getCellY(parallelogram.getMaxY());
+
+		if (isCheaperToScanAllCells(minCellX, minCellY, maxCellX, maxCellY)) {
+			for (Cell<T> cell : cells.values()) {
+				if (!cell.isWithin(minCellX, minCellY, maxCellX, maxCellY)) {
+					continue;
+				}
+				addElementsWithinRegion(result, cell, parallelogram);
+			}
+			return;
+		}
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+			for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+				Cell<T> cell = cells.get(getKey(cellX, cellY));
+				if (cell == null) {
+					continue;
+				}
+				addElementsWithinRegion(result, cell, parallelogram);
+			}
+		}
+	}
+
+	/**
+	 * Visits all elements within a region without allocating a result
+	 * {@link Collection}
+	 * 
+	 * @param visitor
+	 *            The {@link QuadElementVisitor} to call for each matching
+	 *            element
+	 * @param parallelogram
+	 *            The region to search
+	 */
+	public void getElementsWithinRegion(QuadElementVisitor<T> visitor,
+			Parallelogram parallelogram) {
+		int minCellX = getCellX(parallelogram.getMinX());
+		int minCellY = getCellY(parallelogram.getMinY());
+		int maxCellX = getCellX(parallelogram.getMaxX());
+		int maxCellY = getCellY(parallelogram.getMaxY());
+
+		if (isCheaperToScanAllCells(minCellX, minCellY, maxCellX, maxCellY)) {
+			for (Cell<T> cell : cells.values()) {
+				if (!cell.isWithin(minCellX, minCellY, maxCellX, maxCellY)) {
+					continue;
+				}
+				visitElementsWithinRegion(visitor, cell, parallelogram);
+			}
+			return;
+		}
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+			for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+				Cell<T> cell = cells.get(getKey(cellX, cellY));
+				if (cell == null) {
+					continue;
+				}
+				visitElementsWithinRegion(visitor, cell, parallelogram);
+			}
+		}
+	}
+
+	public List<T> getElementsIntersectingLineSegment(LineSegment lineSegment) {
+		List<T> result = new ArrayList<T>();
+		getElementsIntersectingLineSegment(result, lineSegment);
+		return result;
+	}
+
+	public void getElementsIntersectingLineSegment(Collection<T> result,
+			LineSegment lineSegment) {
+		int minCellX = getCellX(lineSegment.getMinX());
+		int minCellY = getCellY(lineSegment.getMinY());
+		int maxCellX = getCellX(lineSegment.getMaxX());
+		int maxCellY = getCellY(lineSegment.getMaxY());
+
+		if (isCheaperToScanAllCells(minCellX, minCellY, maxCellX, maxCellY)) {
+			for (Cell<T> cell : cells.values()) {
+				if (!cell.isWithin(minCellX, minCellY, maxCellX, maxCellY)) {
+					continue;
+				}
+				addElementsIntersectingLineSegment(result, cell, lineSegment);
+			}
+			return;
+		}
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+			for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+				Cell<T> cell = cells.get(getKey(cellX, cellY));
+				if (cell == null) {
+					continue;
+				}
+				addElementsIntersectingLineSegment(result, cell, lineSegment);
+			}
+		}
+	}
+
+	/**
+	 * Visits all elements intersecting a {@link LineSegment} without
+	 * allocating a result {@link Collection}
+	 * 
+	 * @param visitor
+	 *            The {@link QuadElementVisitor} to call for each matching
+	 *            element
+	 * @param lineSegment
+	 *            The {@link LineSegment} to search along
+	 */
+	public void getElementsIntersectingLineSegment(
+			QuadElementVisitor<T> visitor, LineSegment lineSegment) {
+		int minCellX = getCellX(lineSegment.getMinX());
+		int minCellY = getCellY(lineSegment.getMinY());
+		int maxCellX = getCellX(lineSegment.getMaxX());
+		int maxCellY = getCellY(lineSegment.getMaxY());
+
+		if (isCheaperToScanAllCells(minCellX, minCellY, maxCellX, maxCellY)) {
+			for (Cell<T> cell : cells.values()) {
+				if (!cell.isWithin(minCellX, minCellY, maxCellX, maxCellY)) {
+					continue;
+				}
+				visitElementsIntersectingLineSegment(visitor, cell, lineSegment);
+			}
+			return;
+		}
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+			for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+				Cell<T> cell = cells.get(getKey(cellX, cellY));
+				if (cell == null) {
+					continue;
+				}
+				visitElementsIntersectingLineSegment(visitor, cell, lineSegment);
+			}
+		}
+	}
+
+	public List<T> getElements() {
+		List<T> result = new ArrayList<T>();
+		getElements(result);
+		return result;
+	}
+
+	/**
+	 * Adds all elements in this {@link SpatialHash} to a caller-owned
+	 * {@link Collection}
+	 * 
+	 * @param result
+	 *            The {@link Collection} to add the elements to
+	 */
+	public void getElements(Collection<T> result) {
+		result.addAll(elementCells.keySet());
+	}
+
+	/**
+	 * Visits all elements without allocating a result {@link Collection}
+	 * 
+	 * @param visitor
+	 *            The {@link QuadElementVisitor} to call for each element
+	 */
+	public void getElements(QuadElementVisitor<T> visitor) {
+		for (Cell<T> cell : cells.values()) {
+			for (int i = cell.elements.size() - 1; i >= 0; i--) {
+				visitor.visit(cell.elements.get(i));
+			}
+		}
+	}
+
+	private void addElementsWithinRegion(Collection<T> result, Cell<T> cell,
+			Parallelogram parallelogram) {
+		for (int i = cell.elements.size() - 1; i >= 0; i--) {
+			T element = cell.elements.get(i);
+			if (parallelogram.contains(element.getX(), element.getY())) {
+				result.add(element);
+			}
+		}
+	}
+
+	private void visitElementsWithinRegion(QuadElementVisitor<T> visitor,
+			Cell<T> cell, Parallelogram parallelogram) {
+		for (int i = cell.elements.size() - 1; i >= 0; i--) {
+			T element = cell.elements.get(i);
+			if (parallelogram.contains(element.getX(), element.getY())) {
+				visitor.visit(element);
+			}
+		}
+	}
+
+	private void addElementsIntersectingLineSegment(Collection<T> result,
+			Cell<T> cell, LineSegment lineSegment) {
+		for (int i = cell.elements.size() - 1; i >= 0; i--) {
+			T element = cell.elements.get(i);
+			if (lineSegment.contains(element.getX(), element.getY())) {
+				result.add(element);
+			}
+		}
+	}
+
+	private void visitElementsIntersectingLineSegment(
+			QuadElementVisitor<T> visitor, Cell<T> cell,
+			LineSegment lineSegment) {
+		for (int i = cell.elements.size() - 1; i >= 0; i--) {
+			T element = cell.elements.get(i);
+			if (lineSegment.contains(element.getX(), element.getY())) {
+				visitor.visit(element);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if a query covers more cells than are currently occupied
+	 */
+	private boolean isCheaperToScanAllCells(int minCellX, int minCellY,
+			int maxCellX, int maxCellY) {
+		long totalCells = ((long) maxCellX - minCellX + 1)
+				* ((long) maxCellY - minCellY + 1);
+		return totalCells > cells.size;
+	}
+
+	private Cell<T> obtainCell(int cellX, int cellY) {
+		long key = getKey(cellX, cellY);
+		Cell<T> cell = cells.get(key);
+		if (cell != null) {
+			return cell;
+		}
+		if (cellPool.isEmpty()) {
+			cell = new Cell<T>();
+		} else {
+			cell = cellPool.remove(cellPool.size() - 1);
+		}
+		cell.cellX = cellX;
+		cell.cellY = cellY;
+		cells.put(key, cell);
+		return cell;
+	}
+
+	private void removeFromCell(Cell<T> cell, T element) {
+		List<T> elements = cell.elements;
+		for (int i = elements.size() - 1; i >= 0; i--) {
+			if (elements.get(i) != element) {
+				continue;
+			}
+			int last = elements.size() - 1;
+			elements.set(i, elements.get(last));
+			elements.remove(last);
+			break;
+		}
+		if (elements.isEmpty()) {
+			cells.remove(getKey(cell.cellX, cell.cellY));
+			freeCell(cell);
+		}
+	}
+
+	private void freeCell(Cell<T> cell) {
+		if (cellPool.size() < MAX_POOLED_CELLS) {
+			cellPool.add(cell);
+		}
+	}
+
+	private int getCellX(float x) {
+		return (int) Math.floor(x * inverseCellSize);
+	}
+
+	private int getCellY(float y) {
+		return (int) Math.floor(y * inverseCellSize);
+	}
+
+	private static long getKey(int cellX, int cellY) {
+		return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+
+	public float getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Returns the number of cells currently holding at least one element
+	 * 
+	 * @return 0 if this {@link SpatialHash} is empty
+	 */
+	public int getTotalCells() {
+		return cells.size;
+	}
+
+	public int getTotalElements() {
+		return elementCells.size();
+	}
+
+	private static class Cell<T> {
+		final List<T> elements = new ArrayList<T>(4);
+		int cellX, cellY;
+
+		boolean isWithin(int minCellX, int minCellY, int maxCellX, int maxCellY) {
+			return cellX >= minCellX && cellX <= maxCellX && cellY >= minCellY
+					&& cellY <= maxCellY;
+		}
+	}
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mini2Dx.core.engine.Parallelogram;
+
+import com.badlogic.gdx.utils.LongMap;
+
+/**
+ * Implements an incremental sort and sweep broad phase. The bounds of every
+ * element are kept as sorted endpoint lists on both axes. Each call to
+ * {@link #update()} re-reads the bounds and repairs the lists with an
+ * insertion sort, so frames with mostly coherent motion cost close to
+ * linear time. Pairs that start or stop overlapping are reported to the
+ * registered {@link OverlapListener}s.
+ * 
+ * Overlaps are tested on the axis-aligned bounds of each element.
+ */
+public class SweepAndPrune<T extends Parallelogram> {
+	private final Map<T, Proxy<T>> proxies = new IdentityHashMap<T, Proxy<T>>();
+	private final List<Endpoint<T>> xEndpoints = new ArrayList<Endpoint<T>>();
+	private final List<Endpoint<T>> yEndpoints = new ArrayList<Endpoint<T>>();
+	private final LongMap<Pair<T>> pairs = new LongMap<Pair<T>>();
+	private final List<Pair<T>> changedPairs = new ArrayList<Pair<T>>();
+	private final List<Pair<T>> pairPool = new ArrayList<Pair<T>>();
+	private final List<OverlapListener<T>> listeners = new ArrayList<OverlapListener<T>>(1);
+	private final List<T> pendingRemovals = new ArrayList<T>(1);
+	private boolean notifying;
+	private int nextId;
+
+	/**
+	 * Adds an element. Overlaps involving it are reported on the next call
+	 * to {@link #update()}.
+	 * 
+	 * @param element
+	 *            The element to add
+	 * @return False if the element is null or was already added
+	 */
+	public boolean add(T element) {
+		if (element == null || proxies.containsKey(element)) {
+			return false;
+		}
+		Proxy<T> proxy = new Proxy<T>(element, nextId++);
+		proxy.readBounds();
+		proxies.put(element, proxy);
+		xEndpoints.add(proxy.minXEndpoint);
+		xEndpoints.add(proxy.maxXEndpoint);
+		yEndpoints.add(proxy.minYEndpoint);
+		yEndpoints.add(proxy.maxYEndpoint);
+		return true;
+	}
+
+	/**
+	 * Removes an element. Any overlap it was reported to be part of is ended
+	 * immediately. If called from an {@link OverlapListener}, the removal is
+	 * applied once the current notifications are complete.
+	 * 
+	 * @param element
+	 *            The element to remove
+	 * @return False if the element was not added
+	 */
+	public boolean remove(T element) {
+		if (!proxies.containsKey(element)) {
+			return false;
+		}
+		pendingRemovals.add(element);
+		if (!notifying) {
+			removePending();
+		}
+		return true;
+	}
+
+	private void removePending() {
+		while (!pendingRemovals.isEmpty()) {
+			removeNow(pendingRemovals.remove(pendingRemovals.size() - 1));
+		}
+	}
+
+	private void removeNow(T element) {
+		Proxy<T> proxy = proxies.remove(element);
+		if (proxy == null) {
+			return;
+		}
+		xEndpoints.remove(proxy.minXEndpoint);
+		xEndpoints.remove(proxy.maxXEndpoint);
+		yEndpoints.remove(proxy.minYEndpoint);
+		yEndpoints.remove(proxy.maxYEndpoint);
+
+		for (int i = changedPairs.size() - 1; i >= 0; i--) {
+			Pair<T> pair = changedPairs.get(i);
+			if (pair.proxyA == proxy || pair.proxyB == proxy) {
+				changedPairs.remove(i);
+			}
+		}
+		List<Pair<T>> removedPairs = new ArrayList<Pair<T>>();
+		for (Pair<T> pair : pairs.values()) {
+			if (pair.proxyA == proxy || pair.proxyB == proxy) {
+				removedPairs.add(pair);
+			}
+		}
+		notifying = true;
+		for (int i = 0; i < removedPairs.size(); i++) {
+			Pair<T> pair = removedPairs.get(i);
+			pairs.remove(getKey(pair.proxyA, pair.proxyB));
+			if (pair.reported) {
+				notifyOverlapEnded(pair);
+			}
+			freePair(pair);
+		}
+		notifying = false;
+	}
+
+	/**
+	 * Removes all elements without notifying listeners
+	 */
+	public void clear() {
+		for (Pair<T> pair : pairs.values()) {
+			freePair(pair);
+		}
+		pairs.clear();
+		changedPairs.clear();
+		pendingRemovals.clear();
+		proxies.clear();
+		xEndpoints.clear();
+		yEndpoints.clear();
+	}
+
+	/**
+	 * Re-reads the bounds of all elements, repairs the sorted endpoint lists
+	 * and notifies listeners of pairs that started or stopped overlapping
+	 */
+	public void update() {
+		for (Proxy<T> proxy : proxies.values()) {
+			proxy.readBounds();
+		}
+		sort(xEndpoints);
+		sort(yEndpoints);
+
+		notifying = true;
+		while (!changedPairs.isEmpty()) {
+			Pair<T> pair = changedPairs.remove(changedPairs.size() - 1);
+			pair.changed = false;
+			if (pair.overlapping) {
+				if (!pair.reported) {
+					pair.reported = true;
+					notifyOverlapBegan(pair);
+				}
+				continue;
+			}
+			pairs.remove(getKey(pair.proxyA, pair.proxyB));
+			if (pair.reported) {
+				notifyOverlapEnded(pair);
+			}
+			freePair(pair);
+		}
+		notifying = false;
+		removePending();
+	}
+
+	private void sort(List<Endpoint<T>> endpoints) {
+		for (int i = 1; i < endpoints.size(); i++) {
+			Endpoint<T> endpoint = endpoints.get(i);
+			int j = i - 1;
+			while (j >= 0) {
+				Endpoint<T> other = endpoints.get(j);
+				if (!isAfter(other, endpoint)) {
+					break;
+				}
+				if (endpoint.min && !other.min) {
+					if (endpoint.proxy.overlaps(other.proxy)) {
+						beginPair(endpoint.proxy, other.proxy);
+					}
+				} else if (!endpoint.min && other.min) {
+					endPair(endpoint.proxy, other.proxy);
+				}
+				endpoints.set(j + 1, other);
+				j--;
+			}
+			endpoints.set(j + 1, endpoint);
+		}
+	}
+
+	/**
+	 * Orders endpoints by value with minimums before maximums at equal
+	 * values, so that touching bounds count as overlapping
+	 */
+	private static boolean isAfter(Endpoint<?> endpoint, Endpoint<?> other) {
+		float value = endpoint.getValue();
+		float otherValue = other.getValue();
+		if (value != otherValue) {
+			return value > otherValue;
+		}
+		return !endpoint.min && other.min;
+	}
+
+	private void beginPair(Proxy<T> proxyA, Proxy<T> proxyB) {
+		long key = getKey(proxyA, proxyB);
+		Pair<T> pair = pairs.get(key);
+		if (pair == null) {
+			pair = allocatePair();
+			if (proxyA.id < proxyB.id) {
+				pair.set(proxyA, proxyB);
+			} else {
+				pair.set(proxyB, proxyA);
+			}
+			pairs.put(key, pair);
+		}
+		pair.overlapping = true;
+		markChanged(pair);
+	}
+
+	private void endPair(Proxy<T> proxyA, Proxy<T> proxyB) {
+		Pair<T> pair = pairs.get(getKey(proxyA, proxyB));
+		if (pair == null) {
+			return;
+		}
+		pair.overlapping = false;
+		markChanged(pair);
+	}
+
+	private void markChanged(Pair<T> pair) {
+		if (!pair.changed) {
+			pair.changed = true;
+			changedPairs.add(pair);
+		}
+	}
+
+	private Pair<T> allocatePair() {
+		if (pairPool.isEmpty()) {
+			return new Pair<T>();
+		}
+		return pairPool.remove(pairPool.size() - 1);
+	}
+
+	private void freePair(Pair<T> pair) {
+		pair.set(null, null);
+		pairPool.add(pair);
+	}
+
+	private static long getKey(Proxy<?> proxyA, Proxy<?> proxyB) {
+		int low = Math.min(proxyA.id, proxyB.id);
+		int high = Math.max(proxyA.id, proxyB.id);
+		return ((long) low << 32) | (high & 0xFFFFFFFFL);
+	}
+
+	private void notifyOverlapBegan(Pair<T> pair) {
+		for (int i = listeners.size() - 1; i >= 0; i--) {
+			listeners.get(i).overlapBegan(pair.proxyA.element,
+					pair.proxyB.element);
+		}
+	}
+
+	private void notifyOverlapEnded(Pair<T> pair) {
+		for (int i = listeners.size() - 1; i >= 0; i--) {
+			listeners.get(i).overlapEnded(pair.proxyA.element,
+					pair.proxyB.element);
+		}
+	}
+
+	/**
+	 * Calls back once for each pair of elements currently reported as
+	 * overlapping
+	 * 
+	 * @param callback
+	 *            The {@link PairCallback} to notify
+	 */
+	public void forEachOverlappingPair(PairCallback<T> callback) {
+		for (Pair<T> pair : pairs.values()) {
+			if (pair.reported) {
+				callback.onPair(pair.proxyA.element, pair.proxyB.element);
+			}
+		}
+	}
+
+	public void addOverlapListener(OverlapListener<T> listener) {
+		listeners.add(listener);
+	}
+
+	public void removeOverlapListener(OverlapListener<T> listener) {
+		listeners.remove(listener);
+	}
+
+	public boolean contains(T element) {
+		return proxies.containsKey(element);
+	}
+
+	public int getTotalElements() {
+		return proxies.size();
+	}
+
+	/**
+	 * Returns the number of pairs reported as overlapping
+	 * 
+	 * @return
+	 */
+	public int getTotalOverlappingPairs() {
+		int result = 0;
+		for (Pair<T> pair : pairs.values()) {
+			if (pair.reported) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	private static class Proxy<T extends Parallelogram> {
+		final T element;
+		final int id;
+		final Endpoint<T> minXEndpoint, maxXEndpoint, minYEndpoint,
+				maxYEndpoint;
+		float minX, minY, maxX, maxY;
+
+		Proxy(T element, int id) {
+			this.element = element;
+			this.id = id;
+			minXEndpoint = new Endpoint<T>(this, true, true);
+			maxXEndpoint = new Endpoint<T>(this, false, true);
+			minYEndpoint = new Endpoint<T>(this, true, false);
+			maxYEndpoint = new Endpoint<T>(this, false, false);
+		}
+
+		void readBounds() {
+			minX = element.getMinX();
+			minY = element.getMinY();
+			maxX = element.getMaxX();
+			maxY = element.getMaxY();
+		}
+
+		boolean overlaps(Proxy<?> proxy) {
+			return maxX >= proxy.minX && proxy.maxX >= minX
+					&& maxY >= proxy.minY && proxy.maxY >= minY;
+		}
+	}
+
+	private static class Endpoint<T extends Parallelogram> {
+		final Proxy<T> proxy;
+		final boolean min, xAxis;
+
+		Endpoint(Proxy<T> proxy, boolean min, boolean xAxis) {
+			this.proxy = proxy;
+			this.min = min;
+			this.xAxis = xAxis;
+		}
+
+		float getValue() {
+			if (xAxis) {
+				return min ? proxy.minX : proxy.maxX;
+			}
+			return min ? proxy.minY : proxy.maxY;
+		}
+	}
+
+	private static class Pair<T extends Parallelogram> {
+		Proxy<T> proxyA, proxyB;
+		boolean overlapping, reported, changed;
+
+		void set(Proxy<T> proxyA, Proxy<T> proxyB) {
+			this.proxyA = proxyA;
+			this.proxyB = proxyB;
+			overlapping = false;
+			reported = false;
+			changed = false;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.geom;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mini2Dx.core.geom.BoundingBoxBatch.OverlapCallback;
+
+/**
+ * Unit tests for {@link BoundingBoxBatch}
+ */
+public class BoundingBoxBatchTest {
+	private static final int TOTAL_BOXES = 200;
+
+	private BoundingBoxBatch batch;
+	private Rectangle[] rectangles;
+
+	@Before
+	public void setup() {
+		Random random = new Random(1234L);
+		batch = new BoundingBoxBatch(4);
+		rectangles = new Rectangle[TOTAL_BOXES];
+		for (int i = 0; i < TOTAL_BOXES; i++) {
+			rectangles[i] = new Rectangle(random.nextInt(500),
+					random.nextInt(500), 1 + random.nextInt(40),
+					1 + random.nextInt(40));
+			Assert.assertEquals(i, batch.add(rectangles[i]));
+		}
+	}
+
+	@Test
+	public void testQuery() {
+		Rectangle area = new Rectangle(100f, 100f, 150f, 80f);
+		int[] results = new int[batch.size()];
+		int total = batch.query(area.getMinX(), area.getMinY(),
+				area.getMaxX(), area.getMaxY(), results);
+
+		Set<Integer> expected = new HashSet<Integer>();
+		for (int i = 0; i < TOTAL_BOXES; i++) {
+			if (area.intersects(rectangles[i])) {
+				expected.add(i);
+			}
+		}
+		Assert.assertEquals(expected.size(), total);
+		for (int i = 0; i < total; i++) {
+			Assert.assertTrue(expected.contains(results[i]));
+		}
+	}
+
+	@Test
+	public void testOverlapsMask() {
+		float[] minX = { 0f, 10f, 20f };
+		float[] minY = { 0f, 10f, 20f };
+		float[] maxX = { 5f, 15f, 25f };
+		float[] maxY = { 5f, 15f, 25f };
+		boolean[] results = new boolean[3];
+
+		BoundingBoxBatch.overlaps(5f, 5f, 12f, 12f, minX, minY, maxX, maxY,
+				3, results);
+		Assert.assertEquals(true, results[0]);
+		Assert.assertEquals(true, results[1]);
+		Assert.assertEquals(false, results[2]);
+	}
+
+	@Test
+	public void testSweepAndPrune() {
+		assertSweepAndPruneMatchesBruteForce();
+
+		Random random = new Random(5678L);
+		for (int i = 0; i < TOTAL_BOXES; i++) {
+			Rectangle rectangle = rectangles[i];
+			rectangle.setPosition(rectangle.getX() + random.nextInt(11) - 5,
+					rectangle.getY() + random.nextInt(11) - 5);
+			batch.set(i, rectangle);
+		}
+		assertSweepAndPruneMatchesBruteForce();
+
+		rectangles = new Rectangle[] { new Rectangle(0f, 0f, 10f, 10f) };
+		batch.clear();
+		batch.add(rectangles[0]);
+		assertSweepAndPruneMatchesBruteForce();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testSetOutOfBounds() {
+		batch.set(TOTAL_BOXES, 0f, 0f, 1f, 1f);
+	}
+
+	private void assertSweepAndPruneMatchesBruteForce() {
+		final Set<Long> pairs = new HashSet<Long>();
+		batch.sweepAndPrune(new OverlapCallback() {
+			@Override
+			public void onOverlap(int indexA, int indexB) {
+				Assert.assertTrue(indexA < indexB);
+				Assert.assertTrue(pairs.add(((long) indexA << 32) | indexB));
+			}
+		});
+
+		int expected = 0;
+		for (int i = 0; i < rectangles.length; i++) {
+			for (int j = i + 1; j < rectangles.length; j++) {
+				if (rectangles[i].intersects(rectangles[j])) {
+					expected++;
+					Assert.assertTrue(pairs.contains(((long) i << 32) | j));
+				}
+			}
+		}
+		Assert.assertEquals(expected, pairs.size());
+	}
+}
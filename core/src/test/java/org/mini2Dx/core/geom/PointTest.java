@@ -15,6 +15,7 @@ import junit.framework.Assert;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mini2Dx.core.engine.PositionChangeListener;
 
 /**
  * Implements unit tests for {@link Point}
@@ -111,4 +112,26 @@ public class PointTest {
 		point2.rotateAround(point1, 90f);
 		Assert.assertEquals(10f, point2.getY());
 	}
+	
+	@Test
+	public void testPositionChangeListener() {
+		final int[] notifications = new int[1];
+		PositionChangeListener<Point> listener = new PositionChangeListener<Point>() {
+			@Override
+			public void positionChanged(Point moved) {
+				notifications[0]++;
+			}
+		};
+		point1.set(1f, 1f);
+		point1.removePositionChangeListener(listener);
+		
+		point1.addPostionChangeListener(listener);
+		point1.set(2f, 2f);
+		point1.add(1f, 0f);
+		Assert.assertEquals(2, notifications[0]);
+		
+		point1.removePositionChangeListener(listener);
+		point1.set(0f, 0f);
+		Assert.assertEquals(2, notifications[0]);
+	}
 }
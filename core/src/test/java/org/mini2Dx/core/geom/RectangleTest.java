@@ -15,10 +15,14 @@ import java.util.Random;
 
 import junit.framework.Assert;
 
+import org.jmock.Expectations;
+import org.jmock.Mockery;
 import org.junit.Before;
 import org.junit.Test;
+import org.mini2Dx.core.engine.Parallelogram;
 import org.mini2Dx.core.engine.PositionChangeListener;
 
+import com.badlogic.gdx.math.Intersector.MinimumTranslationVector;
 import com.badlogic.gdx.math.MathUtils;
 
 /**
@@ -260,6 +264,129 @@ public class RectangleTest implements PositionChangeListener<Rectangle> {
 		Assert.assertEquals(true, rectangle2.intersects(rectangle1));
 	}
 
+	@Test
+	public void testIntersectsRotatedRectangleWithinBounds() {
+		rectangle1 = new Rectangle(0f, 0f, 10f, 10f);
+		rectangle2 = new Rectangle(14f, 8f, 10f, 10f);
+		rectangle2.rotate(45f);
+
+		Assert.assertEquals(true, rectangle1.intersects(rectangle2.getMinX(),
+				rectangle2.getMinY(), rectangle2.getWidth(),
+				rectangle2.getHeight()));
+		Assert.assertEquals(false, rectangle1.intersects(rectangle2));
+		Assert.assertEquals(false, rectangle2.intersects(rectangle1));
+
+		rectangle2.rotate(-45f);
+		rectangle2.setX(9f);
+		rectangle2.rotate(45f);
+		Assert.assertEquals(true, rectangle1.intersects(rectangle2));
+		Assert.assertEquals(true, rectangle2.intersects(rectangle1));
+	}
+
+	@Test
+	public void testIntersectsMinimumTranslationVector() {
+		MinimumTranslationVector mtv = new MinimumTranslationVector();
+		rectangle1 = new Rectangle(0f, 0f, 10f, 10f);
+		rectangle2 = new Rectangle(8f, 2f, 10f, 10f);
+
+		Assert.assertEquals(true, rectangle1.intersects(rectangle2, mtv));
+		Assert.assertEquals(2f, mtv.depth, 0.0001f);
+		Assert.assertEquals(-1f, mtv.normal.x, 0.0001f);
+		Assert.assertEquals(0f, mtv.normal.y, 0.0001f);
+
+		Assert.assertEquals(true, rectangle2.intersects(rectangle1, mtv));
+		Assert.assertEquals(2f, mtv.depth, 0.0001f);
+		Assert.assertEquals(1f, mtv.normal.x, 0.0001f);
+
+		rectangle1.setX(rectangle1.getX() + (mtv.normal.x * -mtv.depth) - 0.01f);
+		Assert.assertEquals(false, rectangle1.intersects(rectangle2));
+
+		rectangle1 = new Rectangle(0f, 0f, 10f, 10f);
+		rectangle2 = new Rectangle(9f, 2f, 10f, 10f);
+		rectangle2.rotate(45f);
+		Assert.assertEquals(true, rectangle2.intersects(rectangle1, mtv));
+		Assert.assertEquals(true, mtv.depth > 0f);
+		rectangle2.rotate(-45f);
+		rectangle2.setX(rectangle2.getX() + (mtv.normal.x * mtv.depth)
+				+ (mtv.normal.x * 0.01f));
+		rectangle2.setY(rectangle2.getY() + (mtv.normal.y * mtv.depth)
+				+ (mtv.normal.y * 0.01f));
+		rectangle2.rotate(45f);
+		Assert.assertEquals(false, rectangle2.intersects(rectangle1));
+
+		rectangle2 = new Rectangle(50f, 50f, 10f, 10f);
+		Assert.assertEquals(false, rectangle1.intersects(rectangle2, mtv));
+	}
+
+	@Test
+	public void testSetPositionWhenRotated() {
+		rectangle1 = new Rectangle(100f, 100f, 50f, 25f);
+		rectangle1.rotate(30f);
+		rectangle1.setPosition(200f, 150f);
+
+		rectangle2 = new Rectangle(200f, 150f, 50f, 25f);
+		rectangle2.rotate(30f);
+
+		assertCornersEqual(rectangle2, rectangle1);
+		Assert.assertEquals(rectangle2.getMinX(), rectangle1.getMinX(), 0.001f);
+		Assert.assertEquals(rectangle2.getMaxY(), rectangle1.getMaxY(), 0.001f);
+
+		rectangle1.setX(100f);
+		rectangle1.setY(100f);
+		rectangle2.setPosition(100f, 100f);
+		assertCornersEqual(rectangle2, rectangle1);
+		Assert.assertEquals(100f, rectangle1.getX(), 0.001f);
+		Assert.assertEquals(100f, rectangle1.getY(), 0.001f);
+	}
+
+	@Test
+	public void testSetSizeWhenRotated() {
+		rectangle1 = new Rectangle(100f, 100f, 50f, 25f);
+		rectangle1.rotate(60f);
+		rectangle1.setSize(20f, 40f);
+
+		rectangle2 = new Rectangle(100f, 100f, 20f, 40f);
+		rectangle2.rotate(60f);
+		assertCornersEqual(rectangle2, rectangle1);
+	}
+
+	@Test
+	public void testSingleNotificationPerMutation() {
+		final int[] notifications = new int[1];
+		rectangle1 = new Rectangle(100f, 100f, 50f, 25f);
+		rectangle1.addPostionChangeListener(new PositionChangeListener<Rectangle>() {
+			@Override
+			public void positionChanged(Rectangle moved) {
+				notifications[0]++;
+			}
+		});
+		rectangle1.rotate(45f);
+		Assert.assertEquals(1, notifications[0]);
+		rectangle1.setPosition(0f, 0f);
+		Assert.assertEquals(2, notifications[0]);
+		rectangle1.setX(10f);
+		Assert.assertEquals(3, notifications[0]);
+		rectangle1.setRotationAround(new Point(0f, 0f), 90f);
+		Assert.assertEquals(4, notifications[0]);
+		rectangle1.setY(10f);
+		Assert.assertEquals(5, notifications[0]);
+	}
+
+	private void assertCornersEqual(Rectangle expected, Rectangle result) {
+		Assert.assertEquals(expected.topLeft.x, result.topLeft.x, 0.001f);
+		Assert.assertEquals(expected.topLeft.y, result.topLeft.y, 0.001f);
+		Assert.assertEquals(expected.topRight.x, result.topRight.x, 0.001f);
+		Assert.assertEquals(expected.topRight.y, result.topRight.y, 0.001f);
+		Assert.assertEquals(expected.bottomLeft.x, result.bottomLeft.x, 0.001f);
+		Assert.assertEquals(expected.bottomLeft.y, result.bottomLeft.y, 0.001f);
+		Assert.assertEquals(expected.bottomRight.x, result.bottomRight.x,
+				0.001f);
+		Assert.assertEquals(expected.bottomRight.y, result.bottomRight.y,
+				0.001f);
+		Assert.assertEquals(expected.getCenterX(), result.getCenterX(), 0.001f);
+		Assert.assertEquals(expected.getCenterY(), result.getCenterY(), 0.001f);
+	}
+
 	@Test
 	public void testIntersectsLineWhenNotRotated() {
 		rectangle1 = new Rectangle(100f, 100f, 50f, 50f);
@@ -306,6 +433,76 @@ public class RectangleTest implements PositionChangeListener<Rectangle> {
 		}
 	}
 
+	@Test
+	public void testIntersectsDimensions() {
+		rectangle1 = new Rectangle(100f, 100f, 50f, 50f);
+		Assert.assertEquals(true, rectangle1.intersects(90f, 90f, 20f, 20f));
+		Assert.assertEquals(true, rectangle1.intersects(150f, 150f, 10f, 10f));
+		Assert.assertEquals(true, rectangle1.intersects(110f, 110f, 5f, 5f));
+		Assert.assertEquals(true, rectangle1.intersects(0f, 0f, 500f, 500f));
+		Assert.assertEquals(false, rectangle1.intersects(0f, 0f, 50f, 50f));
+		Assert.assertEquals(false, rectangle1.intersects(151f, 100f, 10f, 10f));
+		Assert.assertEquals(false, rectangle1.intersects(100f, 151f, 10f, 10f));
+	}
+
+	@Test
+	public void testIntersectsNonRectangleParallelogram() {
+		rectangle1 = new Rectangle(100f, 100f, 50f, 50f);
+		Assert.assertEquals(true, rectangle1
+				.intersects(mockParallelogram(90f, 90f, 20f, 20f, 0f)));
+		Assert.assertEquals(false, rectangle1
+				.intersects(mockParallelogram(0f, 0f, 50f, 50f, 0f)));
+	}
+
+	@Test
+	public void testContainsNonRectangleParallelogram() {
+		rectangle1 = new Rectangle(100f, 100f, 50f, 50f);
+		Assert.assertEquals(true, rectangle1
+				.contains(mockParallelogram(110f, 110f, 20f, 20f, 0f)));
+		Assert.assertEquals(false, rectangle1
+				.contains(mockParallelogram(140f, 110f, 20f, 20f, 0f)));
+
+		rectangle1 = new Rectangle(0f, 0f, 100f, 100f);
+		Assert.assertEquals(true, rectangle1
+				.contains(mockParallelogram(20f, 10f, 20f, 20f, 45f)));
+		Assert.assertEquals(false, rectangle1
+				.contains(mockParallelogram(10f, 10f, 20f, 20f, 45f)));
+
+		rectangle2 = new Rectangle(90f, 10f, 20f, 20f);
+		rectangle2.rotate(45f);
+		Assert.assertEquals(rectangle1.contains(rectangle2), rectangle1
+				.contains(mockParallelogram(90f, 10f, 20f, 20f, 45f)));
+	}
+
+	private Parallelogram mockParallelogram(final float x, final float y,
+			final float width, final float height, final float rotation) {
+		Mockery mockery = new Mockery();
+		final Parallelogram parallelogram = mockery.mock(Parallelogram.class);
+		mockery.checking(new Expectations() {
+			{
+				allowing(parallelogram).getX();
+				will(returnValue(x));
+				allowing(parallelogram).getY();
+				will(returnValue(y));
+				allowing(parallelogram).getWidth();
+				will(returnValue(width));
+				allowing(parallelogram).getHeight();
+				will(returnValue(height));
+				allowing(parallelogram).getRotation();
+				will(returnValue(rotation));
+				allowing(parallelogram).getMinX();
+				will(returnValue(x));
+				allowing(parallelogram).getMinY();
+				will(returnValue(y));
+				allowing(parallelogram).getMaxX();
+				will(returnValue(x + width));
+				allowing(parallelogram).getMaxY();
+				will(returnValue(y + height));
+			}
+		});
+		return parallelogram;
+	}
+
 	@Override
 	public void positionChanged(Rectangle moved) {
 		notificationReceived = true;
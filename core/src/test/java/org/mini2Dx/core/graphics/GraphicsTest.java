@@ -18,8 +18,12 @@ import org.jmock.Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.Before;
 import org.junit.Test;
+import org.mini2Dx.core.geom.Rectangle;
 
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 
 /**
@@ -79,4 +83,125 @@ public class GraphicsTest {
 		Assert.assertNotNull(graphics.getBackgroundColor());
 	}
 
+	@Test
+	public void testRedundantBlendFunctionIgnored() {
+		mockery.checking(new Expectations() {
+			{
+				one(spriteBatch).setBlendFunction(GL20.GL_ONE, GL20.GL_ONE);
+				one(spriteBatch).setBlendFunction(GL20.GL_SRC_ALPHA,
+						GL20.GL_ONE_MINUS_SRC_ALPHA);
+			}
+		});
+		graphics.clearBlendFunction();
+		graphics.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE);
+		graphics.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE);
+		graphics.clearBlendFunction();
+		mockery.assertIsSatisfied();
+
+		Assert.assertEquals(2, graphics.getStatistics()
+				.getBlendFunctionSwitches());
+		Assert.assertEquals(2, graphics.getStatistics()
+				.getRedundantStateChanges());
+	}
+
+	@Test
+	public void testRedundantShaderProgramIgnored() {
+		final ShaderProgram shaderProgram = mockery.mock(ShaderProgram.class);
+		mockery.checking(new Expectations() {
+			{
+				one(spriteBatch).setShader(shaderProgram);
+			}
+		});
+		graphics.setShaderProgram(shaderProgram);
+		graphics.setShaderProgram(shaderProgram);
+		mockery.assertIsSatisfied();
+
+		Assert.assertEquals(1, graphics.getStatistics().getShaderSwitches());
+		Assert.assertEquals(1, graphics.getStatistics()
+				.getRedundantStateChanges());
+	}
+
+	@Test
+	public void testRedundantTintIgnored() {
+		mockery.checking(new Expectations() {
+			{
+				allowing(spriteBatch).getPackedColor();
+				will(returnValue(Color.RED.toFloatBits()));
+				one(spriteBatch).setColor(Color.BLUE);
+			}
+		});
+		graphics.setTint(Color.RED);
+		graphics.setTint(Color.BLUE);
+		mockery.assertIsSatisfied();
+
+		Assert.assertEquals(Color.BLUE, graphics.getTint());
+		Assert.assertEquals(1, graphics.getStatistics()
+				.getRedundantStateChanges());
+	}
+
+	@Test
+	public void testSetClipKeepsMatchingClip() {
+		graphics.setClip(0f, 0f, 100f, 50f);
+		Rectangle clip = graphics.getClip();
+		graphics.setClip(0f, 0f, 100f, 50f);
+		Assert.assertSame(clip, graphics.getClip());
+		graphics.setClip(0f, 0f, 100f, 60f);
+		Assert.assertNotSame(clip, graphics.getClip());
+		Assert.assertEquals(60f, graphics.getClip().getHeight());
+	}
+
+	@Test
+	public void testRedundantTransformationsIgnored() {
+		graphics.translate(0f, 0f);
+		graphics.scale(1f, 1f);
+		graphics.rotate(0f, 10f, 20f);
+		Assert.assertEquals(3, graphics.getStatistics()
+				.getRedundantStateChanges());
+		Assert.assertEquals(10f, graphics.getRotationX());
+		Assert.assertEquals(20f, graphics.getRotationY());
+
+		graphics.translate(5f, 0f);
+		graphics.scale(2f, 1f);
+		Assert.assertEquals(5f, graphics.getTranslationX());
+		Assert.assertEquals(2f, graphics.getScaleX());
+		Assert.assertEquals(3, graphics.getStatistics()
+				.getRedundantStateChanges());
+	}
+
+	@Test
+	public void testPushAndPopClip() {
+		Assert.assertEquals(0, graphics.getClipDepth());
+		Assert.assertNull(graphics.getClip());
+		graphics.pushClip(0f, 0f, 100f, 100f);
+		Rectangle outer = graphics.getClip();
+		Assert.assertEquals(1, graphics.getClipDepth());
+		Assert.assertEquals(100f, outer.getWidth());
+
+		graphics.pushClip(50f, 25f, 100f, 100f);
+		Assert.assertEquals(2, graphics.getClipDepth());
+		Rectangle inner = graphics.getClip();
+		Assert.assertEquals(50f, inner.getX());
+		Assert.assertEquals(25f, inner.getY());
+		Assert.assertEquals(50f, inner.getWidth());
+		Assert.assertEquals(75f, inner.getHeight());
+
+		graphics.pushClip(200f, 200f, 10f, 10f);
+		Rectangle empty = graphics.getClip();
+		Assert.assertEquals(0f, empty.getWidth());
+		Assert.assertEquals(0f, empty.getHeight());
+
+		graphics.popClip();
+		graphics.popClip();
+		Assert.assertSame(outer, graphics.getClip());
+		Assert.assertEquals(100f, graphics.getClip().getWidth());
+
+		graphics.popClip();
+		Assert.assertNull(graphics.getClip());
+		Assert.assertEquals(0, graphics.getClipDepth());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testPopClipWithoutPush() {
+		graphics.popClip();
+	}
 }
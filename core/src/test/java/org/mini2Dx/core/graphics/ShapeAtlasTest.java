@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.graphics;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ShapeAtlas}
+ */
+public class ShapeAtlasTest {
+	private static final int PAGE_SIZE = 16;
+	private static final long PAGE_BYTES = PAGE_SIZE * PAGE_SIZE * 4L;
+
+	@Test
+	public void testNewShelfWhenRowIsFull() {
+		ShapeAtlas atlas = new ShapeAtlas(PAGE_SIZE, PAGE_BYTES);
+		ShapeAtlas.Entry first = atlas.add(0, 0, 1, 1, 0, 7, 3);
+		ShapeAtlas.Entry second = atlas.add(0, 0, 2, 1, 0, 7, 5);
+		ShapeAtlas.Entry third = atlas.add(0, 0, 3, 1, 0, 7, 2);
+
+		Assert.assertEquals(0, first.x);
+		Assert.assertEquals(0, first.y);
+		Assert.assertEquals(8, second.x);
+		Assert.assertEquals(0, second.y);
+		Assert.assertEquals(0, third.x);
+		Assert.assertEquals(6, third.y);
+		Assert.assertSame(first.page, third.page);
+		Assert.assertEquals(1, atlas.getTotalPages());
+	}
+
+	@Test
+	public void testFullPageFallsThroughToNewPage() {
+		ShapeAtlas atlas = new ShapeAtlas(PAGE_SIZE, PAGE_BYTES * 4);
+		ShapeAtlas.Entry first = null;
+		for (int i = 0; i < 4; i++) {
+			ShapeAtlas.Entry entry = atlas.add(0, 0, i, 1, 0, 7, 7);
+			if (first == null) {
+				first = entry;
+			}
+			Assert.assertSame(first.page, entry.page);
+		}
+		ShapeAtlas.Entry overflow = atlas.add(0, 0, 4, 1, 0, 7, 7);
+
+		Assert.assertNotSame(first.page, overflow.page);
+		Assert.assertEquals(0, overflow.x);
+		Assert.assertEquals(0, overflow.y);
+		Assert.assertEquals(2, atlas.getTotalPages());
+		Assert.assertEquals(PAGE_BYTES * 2, atlas.getTotalBytes());
+	}
+
+	@Test
+	public void testPagesUsedThisFrameAreNotEvicted() {
+		ShapeAtlas atlas = new ShapeAtlas(PAGE_SIZE, PAGE_BYTES);
+		atlas.add(0, 0, 1, 1, 0, 15, 15);
+		atlas.beginFrame();
+		Assert.assertNotNull(atlas.get(0, 0, 1, 1, 0));
+		atlas.add(0, 0, 2, 1, 0, 15, 15);
+
+		Assert.assertEquals(2, atlas.getTotalPages());
+		Assert.assertEquals(PAGE_BYTES * 2, atlas.getTotalBytes());
+		Assert.assertNotNull(atlas.get(0, 0, 1, 1, 0));
+		Assert.assertNotNull(atlas.get(0, 0, 2, 1, 0));
+	}
+
+	@Test
+	public void testBeginFrameEvictsUnderBudget() {
+		ShapeAtlas atlas = new ShapeAtlas(PAGE_SIZE, PAGE_BYTES);
+		atlas.add(0, 0, 1, 1, 0, 15, 15);
+		atlas.add(0, 0, 2, 1, 0, 15, 15);
+		Assert.assertEquals(PAGE_BYTES * 2, atlas.getTotalBytes());
+
+		atlas.beginFrame();
+		Assert.assertNotNull(atlas.get(0, 0, 2, 1, 0));
+		atlas.beginFrame();
+
+		Assert.assertEquals(true, atlas.getTotalBytes() <= atlas.getBudget());
+		Assert.assertEquals(1, atlas.getTotalPages());
+		Assert.assertNull(atlas.get(0, 0, 1, 1, 0));
+		Assert.assertNotNull(atlas.get(0, 0, 2, 1, 0));
+	}
+
+	@Test
+	public void testEvictingMiddleOfCollisionChain() {
+		/* (1, 63), (2, 32) and (3, 1) hash to the same key */
+		Assert.assertEquals(ShapeAtlas.getKey(1, 0, 1, 63, 1),
+				ShapeAtlas.getKey(1, 0, 2, 32, 1));
+		Assert.assertEquals(ShapeAtlas.getKey(1, 0, 1, 63, 1),
+				ShapeAtlas.getKey(1, 0, 3, 1, 1));
+
+		ShapeAtlas atlas = new ShapeAtlas(PAGE_SIZE, PAGE_BYTES * 3);
+		ShapeAtlas.Entry tail = atlas.add(1, 0, 1, 63, 1, 15, 15);
+		atlas.beginFrame();
+		ShapeAtlas.Entry middle = atlas.add(1, 0, 2, 32, 1, 15, 15);
+		atlas.beginFrame();
+		ShapeAtlas.Entry head = atlas.add(1, 0, 3, 1, 1, 15, 15);
+		Assert.assertSame(middle, head.next);
+		Assert.assertSame(tail, middle.next);
+
+		atlas.beginFrame();
+		Assert.assertSame(tail, atlas.get(1, 0, 1, 63, 1));
+		Assert.assertSame(head, atlas.get(1, 0, 3, 1, 1));
+		atlas.add(0, 0, 1, 1, 0, 15, 15);
+
+		Assert.assertEquals(3, atlas.getTotalPages());
+		Assert.assertNull(atlas.get(1, 0, 2, 32, 1));
+		Assert.assertSame(head, atlas.get(1, 0, 3, 1, 1));
+		Assert.assertSame(tail, atlas.get(1, 0, 1, 63, 1));
+		Assert.assertSame(tail, head.next);
+	}
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mini2Dx.core.geom.LineSegment;
+import org.mini2Dx.core.geom.Point;
+import org.mini2Dx.core.geom.Rectangle;
+
+/**
+ * Unit tests for {@link ConcurrentQuad}
+ */
+public class ConcurrentQuadTest {
+	private ConcurrentQuad<Point> rootQuad;
+	private Point point1, point2, point3, point4;
+
+	@Before
+	public void setup() {
+		rootQuad = new ConcurrentQuad<Point>(2, 2, 0, 0, 128, 128);
+		point1 = new Point(0, 0);
+		point2 = new Point(128, 0);
+		point3 = new Point(0, 128);
+		point4 = new Point(128, 128);
+	}
+	
+	@Test
+	public void testAddAndRemove() {
+		Random random = new Random();
+		List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 1000; i++) {
+			points.add(new Point(random.nextInt(128), random.nextInt(128)));
+		}
+		for(int i = 0; i < points.size(); i++) {
+			Assert.assertEquals(true, rootQuad.add(points.get(i)));
+			Assert.assertEquals(i + 1, rootQuad.getTotalElements());
+		}
+		Assert.assertEquals(false, rootQuad.add(new Point(256, 256)));
+		for(int i = points.size() - 1; i >= 0 ; i--) {
+			Assert.assertEquals(true, rootQuad.remove(points.get(i)));
+			Assert.assertEquals(i, rootQuad.getElements().size());
+		}
+	}
+	
+	@Test
+	public void testGetElementsWithinRegion() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		
+		List<Point> points = rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 64, 64));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(point1, points.get(0));
+		
+		points = rootQuad.getElementsWithinRegion(new Rectangle(32, 32, 128, 128));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(point4, points.get(0));
+		
+		points = rootQuad.getElementsIntersectingLineSegment(new LineSegment(0, 0, 128, 128));
+		Assert.assertEquals(2, points.size());
+		Assert.assertEquals(true, points.contains(point1));
+		Assert.assertEquals(true, points.contains(point4));
+	}
+	
+	@Test
+	public void testFlushMoves() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		
+		point1.set(100, 10);
+		point1.set(100, 100);
+		rootQuad.flushMoves();
+		
+		List<Point> points = rootQuad.getElementsWithinRegion(new Rectangle(64, 64, 64, 64));
+		Assert.assertEquals(2, points.size());
+		Assert.assertEquals(true, points.contains(point1));
+		Assert.assertEquals(0, rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 63, 63)).size());
+		Assert.assertEquals(4, rootQuad.getTotalElements());
+	}
+	
+	@Test
+	public void testFlushMovesAfterStripeSubdivides() {
+		rootQuad = new ConcurrentQuad<Point>(4, 2, 0, 0, 128, 128);
+		Point moved = new Point(10, 10);
+		rootQuad.add(moved);
+		rootQuad.add(new Point(20, 20));
+		rootQuad.add(new Point(30, 30));
+		rootQuad.add(new Point(40, 40));
+		
+		moved.set(100, 10);
+		rootQuad.add(new Point(50, 50));
+		rootQuad.flushMoves();
+		
+		Assert.assertEquals(5, rootQuad.getTotalElements());
+		List<Point> points = rootQuad.getElementsWithinRegion(new Rectangle(64, 0, 64, 63));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(moved, points.get(0));
+		Assert.assertEquals(4, rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 63, 63)).size());
+	}
+	
+	@Test
+	public void testRemoveMovedElement() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		
+		point1.set(100, 100);
+		Assert.assertEquals(true, rootQuad.remove(point1));
+		Assert.assertEquals(3, rootQuad.getTotalElements());
+		point1.set(10, 10);
+		rootQuad.flushMoves();
+		Assert.assertEquals(3, rootQuad.getTotalElements());
+		Assert.assertEquals(false, rootQuad.getElements().contains(point1));
+	}
+	
+	@Test
+	public void testConcurrentMovesAndAdds() throws Exception {
+		final Random random = new Random();
+		final List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 200; i++) {
+			Point point = new Point(random.nextInt(64), random.nextInt(64));
+			points.add(point);
+			rootQuad.add(point);
+		}
+		
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		Thread mover = new Thread() {
+			@Override
+			public void run() {
+				Random moverRandom = new Random();
+				try {
+					for(int i = 0; i < 20000; i++) {
+						points.get(moverRandom.nextInt(points.size())).set(moverRandom.nextInt(128), moverRandom.nextInt(128));
+					}
+				} catch (Exception e) {
+					failed.set(true);
+				}
+			}
+		};
+		mover.start();
+		List<Point> added = new ArrayList<Point>();
+		for(int i = 0; i < 2000; i++) {
+			Point point = new Point(random.nextInt(64), random.nextInt(64));
+			added.add(point);
+			rootQuad.add(point);
+		}
+		mover.join();
+		rootQuad.flushMoves();
+		
+		Assert.assertEquals(false, failed.get());
+		Assert.assertEquals(2200, rootQuad.getTotalElements());
+		List<Point> elements = rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 128, 128));
+		Assert.assertEquals(2200, elements.size());
+		Assert.assertEquals(true, elements.containsAll(points));
+	}
+	
+	@Test
+	public void testConcurrentQueriesAndMoves() throws Exception {
+		final Random random = new Random();
+		final List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 1000; i++) {
+			Point point = new Point(random.nextInt(128), random.nextInt(128));
+			points.add(point);
+			rootQuad.add(point);
+		}
+		
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i = 0; i < 4; i++) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					List<Point> result = new ArrayList<Point>();
+					Rectangle region = new Rectangle(0, 0, 128, 128);
+					try {
+						while(running.get()) {
+							result.clear();
+							rootQuad.getElementsWithinRegion(result, region);
+						}
+					} catch (Exception e) {
+						failed.set(true);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for(int frame = 0; frame < 50; frame++) {
+			for(int i = 0; i < points.size(); i++) {
+				points.get(i).set(random.nextInt(128), random.nextInt(128));
+			}
+			rootQuad.flushMoves();
+		}
+		running.set(false);
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(false, failed.get());
+		Assert.assertEquals(1000, rootQuad.getTotalElements());
+		Assert.assertEquals(1000, rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 128, 128)).size());
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mini2Dx.core.geom.LineSegment;
+import org.mini2Dx.core.geom.Rectangle;
+
+/**
+ * Unit tests for {@link ConcurrentRegionQuad}
+ */
+public class ConcurrentRegionQuadTest {
+	private ConcurrentRegionQuad<Rectangle> rootQuad;
+	private Rectangle rectangle1, rectangle2, rectangle3, rectangle4;
+	
+	@Before
+	public void setup() {
+		rootQuad = new ConcurrentRegionQuad<Rectangle>(2, 2, 0, 0, 128, 128);
+		
+		rectangle1 = new Rectangle(0, 0, 32, 32);
+		rectangle2 = new Rectangle(96, 0, 32, 32);
+		rectangle3 = new Rectangle(0, 96, 32, 32);
+		rectangle4 = new Rectangle(96, 96, 32, 32);
+	}
+	
+	@Test
+	public void testGetElementsWithinRegion() {
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		rootQuad.add(rectangle4);
+		Rectangle rectangle5 = new Rectangle(48, 48, 32, 32);
+		rootQuad.add(rectangle5);
+		Assert.assertEquals(5, rootQuad.getTotalElements());
+		
+		List<Rectangle> rectangles = rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 64, 64));
+		Assert.assertEquals(2, rectangles.size());
+		Assert.assertEquals(true, rectangles.contains(rectangle1));
+		Assert.assertEquals(true, rectangles.contains(rectangle5));
+		
+		rectangles = rootQuad.getElementsIntersectingLineSegment(new LineSegment(0, 0, 128, 128));
+		Assert.assertEquals(3, rectangles.size());
+		
+		Assert.assertEquals(true, rootQuad.remove(rectangle5));
+		Assert.assertEquals(4, rootQuad.getTotalElements());
+	}
+	
+	@Test
+	public void testFlushMoves() {
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		rootQuad.add(rectangle4);
+		
+		rectangle1.setX(48);
+		rectangle1.setY(48);
+		rectangle2.setX(0);
+		rootQuad.flushMoves();
+		
+		List<Rectangle> rectangles = rootQuad.getElementsWithinRegion(new Rectangle(64, 64, 64, 64));
+		Assert.assertEquals(2, rectangles.size());
+		Assert.assertEquals(true, rectangles.contains(rectangle1));
+		rectangles = rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 32, 32));
+		Assert.assertEquals(1, rectangles.size());
+		Assert.assertEquals(true, rectangles.contains(rectangle2));
+		Assert.assertEquals(4, rootQuad.getTotalElements());
+		
+		Assert.assertEquals(true, rootQuad.remove(rectangle1));
+		Assert.assertEquals(true, rootQuad.remove(rectangle2));
+		Assert.assertEquals(2, rootQuad.getTotalElements());
+	}
+	
+	@Test
+	public void testRotatedElementSpanningStripes() {
+		Rectangle rotated = new Rectangle(66, 16, 16, 16);
+		rotated.rotate(45f);
+		Assert.assertEquals(true, rotated.getX() >= 64f);
+		Assert.assertEquals(true, rotated.getMinX() < 64f);
+		Assert.assertEquals(-1, rootQuad.getStripeIndex(rotated));
+		rootQuad.add(rotated);
+		
+		List<Rectangle> rectangles = rootQuad.getElementsWithinRegion(new Rectangle(rotated.getMinX(), 16, 64f - rotated.getMinX() - 1f, 32));
+		Assert.assertEquals(1, rectangles.size());
+		Assert.assertEquals(rotated, rectangles.get(0));
+		Assert.assertEquals(true, rootQuad.remove(rotated));
+		Assert.assertEquals(0, rootQuad.getTotalElements());
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mini2Dx.core.geom.LineSegment;
+import org.mini2Dx.core.geom.Point;
+import org.mini2Dx.core.geom.Rectangle;
+
+/**
+ * Unit tests for {@link ForkJoinQuadExecutor}
+ */
+public class ForkJoinQuadExecutorTest {
+	private ForkJoinPool pool;
+	private List<Point> points;
+	private List<Rectangle> rectangles;
+
+	@Before
+	public void setup() {
+		pool = new ForkJoinPool(4);
+		points = new ArrayList<Point>();
+		rectangles = new ArrayList<Rectangle>();
+		
+		Random random = new Random();
+		for(int i = 0; i < 1000; i++) {
+			points.add(new Point(random.nextInt(128), random.nextInt(128)));
+			rectangles.add(new Rectangle(random.nextInt(96), random.nextInt(96), random.nextInt(32), random.nextInt(32)));
+		}
+	}
+	
+	@After
+	public void teardown() {
+		pool.shutdown();
+	}
+	
+	@Test
+	public void testGetElementsWithinRegion() {
+		Quad<Point> quad = new Quad<Point>(4, 0, 0, 128, 128);
+		for(int i = 0; i < points.size(); i++) {
+			quad.add(points.get(i));
+		}
+		ForkJoinQuadExecutor<Point> executor = new ForkJoinQuadExecutor<Point>(pool, 16);
+		
+		Rectangle region = new Rectangle(17, 33, 40, 50);
+		List<Point> expected = quad.getElementsWithinRegion(region);
+		List<Point> actual = executor.getElementsWithinRegion(quad, region);
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(true, actual.containsAll(expected));
+		
+		Assert.assertEquals(points.size(), executor.getElements(quad).size());
+	}
+	
+	@Test
+	public void testGetElementsWithinRegionForRegionQuad() {
+		RegionQuad<Rectangle> quad = new RegionQuad<Rectangle>(4, 0, 0, 128, 128);
+		for(int i = 0; i < rectangles.size(); i++) {
+			quad.add(rectangles.get(i));
+		}
+		ForkJoinQuadExecutor<Rectangle> executor = new ForkJoinQuadExecutor<Rectangle>(pool, 16);
+		
+		Rectangle region = new Rectangle(17, 33, 40, 50);
+		List<Rectangle> expected = quad.getElementsWithinRegion(region);
+		List<Rectangle> actual = executor.getElementsWithinRegion(quad, region);
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(true, actual.containsAll(expected));
+		
+		LineSegment lineSegment = new LineSegment(0, 10, 128, 100);
+		expected = quad.getElementsIntersectingLineSegment(lineSegment);
+		actual = executor.getElementsIntersectingLineSegment(quad, lineSegment);
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(true, actual.containsAll(expected));
+		
+		Assert.assertEquals(rectangles.size(), executor.getElements(quad).size());
+	}
+	
+	@Test
+	public void testBulkLoad() {
+		RegionQuad<Rectangle> quad = new RegionQuad<Rectangle>(4, 0, 0, 128, 128);
+		RegionQuad<Rectangle> serialQuad = new RegionQuad<Rectangle>(4, 0, 0, 128, 128);
+		ForkJoinQuadExecutor<Rectangle> executor = new ForkJoinQuadExecutor<Rectangle>(pool, 16);
+		
+		Assert.assertEquals(true, executor.bulkLoad(quad, rectangles));
+		serialQuad.bulkLoad(rectangles);
+		Assert.assertEquals(rectangles.size(), quad.getTotalElements());
+		Assert.assertEquals(rectangles.size(), quad.getElements().size());
+		Assert.assertEquals(serialQuad.getTotalNodes(), quad.getTotalNodes());
+		
+		Rectangle region = new Rectangle(17, 33, 40, 50);
+		List<Rectangle> expected = serialQuad.getElementsWithinRegion(region);
+		List<Rectangle> actual = quad.getElementsWithinRegion(region);
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(true, actual.containsAll(expected));
+	}
+}
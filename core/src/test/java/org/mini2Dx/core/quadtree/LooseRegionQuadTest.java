@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mini2Dx.core.geom.LineSegment;
+import org.mini2Dx.core.geom.Rectangle;
+
+/**
+ * Unit tests for {@link LooseRegionQuad}
+ */
+public class LooseRegionQuadTest {
+	private LooseRegionQuad<Rectangle> rootQuad;
+	private Rectangle rectangle1, rectangle2, rectangle3, rectangle4;
+
+	@Before
+	public void setup() {
+		rootQuad = new LooseRegionQuad<Rectangle>(2, 0, 0, 128, 128);
+
+		rectangle1 = new Rectangle(0, 0, 32, 32);
+		rectangle2 = new Rectangle(96, 0, 32, 32);
+		rectangle3 = new Rectangle(0, 96, 32, 32);
+		rectangle4 = new Rectangle(96, 96, 32, 32);
+	}
+
+	@Test
+	public void testStraddlingElementsMoveToChildren() {
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		Rectangle straddling = new Rectangle(56, 8, 16, 16);
+		rootQuad.add(straddling);
+
+		Assert.assertEquals(true, rootQuad.topLeft != null);
+		Assert.assertEquals(0, rootQuad.elements.size());
+		Assert.assertEquals(true, rootQuad.topRight.getElements().contains(straddling));
+		Assert.assertEquals(4, rootQuad.getTotalElements());
+	}
+
+	@Test
+	public void testAddAndRemove() {
+		Random random = new Random();
+		List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		for(int i = 0; i < 1000; i++) {
+			rectangles.add(new Rectangle(random.nextInt(96), random.nextInt(96), random.nextInt(32), random.nextInt(32)));
+		}
+
+		for(int i = 0; i < rectangles.size(); i++) {
+			Assert.assertEquals(true, rootQuad.add(rectangles.get(i)));
+			Assert.assertEquals(i + 1, rootQuad.getElements().size());
+		}
+
+		for(int i = rectangles.size() - 1; i >= 0 ; i--) {
+			Assert.assertEquals(true, rootQuad.remove(rectangles.get(i)));
+			Assert.assertEquals(i, rootQuad.getElements().size());
+		}
+	}
+
+	@Test
+	public void testQueriesMatchRegionQuad() {
+		RegionQuad<Rectangle> regionQuad = new RegionQuad<Rectangle>(2, 0, 0, 128, 128);
+		Random random = new Random();
+		for(int i = 0; i < 500; i++) {
+			Rectangle rect = new Rectangle(random.nextInt(112), random.nextInt(112), 1 + random.nextInt(16), 1 + random.nextInt(16));
+			rootQuad.add(rect);
+			regionQuad.add(rect);
+		}
+
+		for(int i = 0; i < 50; i++) {
+			Rectangle region = new Rectangle(random.nextInt(96), random.nextInt(96), 1 + random.nextInt(32), 1 + random.nextInt(32));
+			List<Rectangle> expected = regionQuad.getElementsWithinRegion(region);
+			List<Rectangle> actual = rootQuad.getElementsWithinRegion(region);
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertEquals(true, actual.containsAll(expected));
+
+			LineSegment lineSegment = new LineSegment(random.nextInt(128), random.nextInt(128), random.nextInt(128), random.nextInt(128));
+			expected = regionQuad.getElementsIntersectingLineSegment(lineSegment);
+			actual = rootQuad.getElementsIntersectingLineSegment(lineSegment);
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertEquals(true, actual.containsAll(expected));
+		}
+	}
+
+	@Test
+	public void testPositionChanged() {
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		rootQuad.add(rectangle4);
+
+		rectangle1.set(40, 8, 16, 16);
+		Assert.assertEquals(true, rootQuad.topLeft.getElements().contains(rectangle1));
+		rectangle1.set(96, 40, 16, 16);
+		Assert.assertEquals(false, rootQuad.topLeft.getElements().contains(rectangle1));
+		Assert.assertEquals(4, rootQuad.getElements().size());
+		Assert.assertEquals(1, rootQuad.getElementsWithinRegion(new Rectangle(90, 36, 32, 8)).size());
+	}
+
+	@Test
+	public void testForEachOverlappingPairMatchesBruteForce() {
+		Random random = new Random();
+		final List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		final Map<Rectangle, Integer> indices = new HashMap<Rectangle, Integer>();
+		for(int i = 0; i < 400; i++) {
+			Rectangle rect = new Rectangle(random.nextInt(112), random.nextInt(112), 1 + random.nextInt(16), 1 + random.nextInt(16));
+			rectangles.add(rect);
+			indices.put(rect, i);
+			rootQuad.add(rect);
+		}
+
+		final Set<String> pairs = new HashSet<String>();
+		rootQuad.forEachOverlappingPair(new PairCallback<Rectangle>() {
+			@Override
+			public void onPair(Rectangle elementA, Rectangle elementB) {
+				Assert.assertEquals(true, elementA.intersects(elementB));
+				int indexA = indices.get(elementA);
+				int indexB = indices.get(elementB);
+				Assert.assertEquals(true, pairs.add(Math.min(indexA, indexB) + "," + Math.max(indexA, indexB)));
+			}
+		});
+
+		int expected = 0;
+		for(int i = 0; i < rectangles.size(); i++) {
+			for(int j = i + 1; j < rectangles.size(); j++) {
+				if(rectangles.get(i).intersects(rectangles.get(j))) {
+					Assert.assertEquals(true, pairs.contains(i + "," + j));
+					expected++;
+				}
+			}
+		}
+		Assert.assertEquals(expected, pairs.size());
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mini2Dx.core.geom.LineSegment;
+import org.mini2Dx.core.geom.Point;
+import org.mini2Dx.core.geom.Rectangle;
+
+/**
+ * Unit tests for {@link PackedQuad}
+ */
+public class PackedQuadTest {
+	private PackedQuad<Point> rootQuad;
+	private Point point1, point2, point3, point4;
+
+	@Before
+	public void setup() {
+		rootQuad = new PackedQuad<Point>(2, 0, 0, 128, 128);
+		point1 = new Point(0, 0);
+		point2 = new Point(128, 0);
+		point3 = new Point(0, 128);
+		point4 = new Point(128, 128);
+	}
+
+	@Test
+	public void testAddAndRemove() {
+		Random random = new Random();
+		List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 1000; i++) {
+			points.add(new Point(random.nextInt(128), random.nextInt(128)));
+		}
+
+		for(int i = 0; i < points.size(); i++) {
+			Assert.assertEquals(true, rootQuad.add(points.get(i)));
+			Assert.assertEquals(i + 1, rootQuad.getTotalElements());
+		}
+		Assert.assertEquals(false, rootQuad.add(points.get(0)));
+		Assert.assertEquals(false, rootQuad.add(new Point(129, 0)));
+		Assert.assertEquals(1000, rootQuad.getElements().size());
+		Assert.assertEquals(true, rootQuad.getTotalNodes() > 1);
+
+		for(int i = points.size() - 1; i >= 0; i--) {
+			Assert.assertEquals(true, rootQuad.remove(points.get(i)));
+			Assert.assertEquals(i, rootQuad.getTotalElements());
+			Assert.assertEquals(i, rootQuad.getElements().size());
+		}
+		Assert.assertEquals(1, rootQuad.getTotalNodes());
+		Assert.assertEquals(1, rootQuad.getDepth());
+	}
+
+	@Test
+	public void testSubdivide() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		Assert.assertEquals(1, rootQuad.getTotalNodes());
+
+		rootQuad.add(point3);
+		Assert.assertEquals(5, rootQuad.getTotalNodes());
+		Assert.assertEquals(2, rootQuad.getDepth());
+
+		rootQuad.add(point4);
+		Assert.assertEquals(4, rootQuad.getElements().size());
+	}
+
+	@Test
+	public void testQueriesMatchQuad() {
+		Quad<Point> quad = new Quad<Point>(2, 0, 0, 128, 128);
+		Random random = new Random();
+		for(int i = 0; i < 500; i++) {
+			Point point = new Point(random.nextInt(128), random.nextInt(128));
+			rootQuad.add(point);
+			quad.add(point);
+		}
+
+		for(int i = 0; i < 50; i++) {
+			Rectangle region = new Rectangle(random.nextInt(96), random.nextInt(96), 1 + random.nextInt(32), 1 + random.nextInt(32));
+			List<Point> expected = quad.getElementsWithinRegion(region);
+			List<Point> actual = rootQuad.getElementsWithinRegion(region);
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertEquals(true, actual.containsAll(expected));
+
+			LineSegment lineSegment = new LineSegment(random.nextInt(128), random.nextInt(128), random.nextInt(128), random.nextInt(128));
+			expected = quad.getElementsIntersectingLineSegment(lineSegment);
+			actual = rootQuad.getElementsIntersectingLineSegment(lineSegment);
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertEquals(true, actual.containsAll(expected));
+		}
+	}
+
+	@Test
+	public void testPositionChanged() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+
+		point1.set(100, 100);
+		List<Point> points = rootQuad.getElementsWithinRegion(new Rectangle(96, 96, 8, 8));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(point1, points.get(0));
+		Assert.assertEquals(0, rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 8, 8)).size());
+
+		point1.set(256, 256);
+		Assert.assertEquals(3, rootQuad.getTotalElements());
+		Assert.assertEquals(false, rootQuad.getElements().contains(point1));
+	}
+
+	@Test
+	public void testClear() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.clear();
+		Assert.assertEquals(0, rootQuad.getTotalElements());
+		Assert.assertEquals(1, rootQuad.getTotalNodes());
+		Assert.assertEquals(true, rootQuad.add(point1));
+		Assert.assertEquals(1, rootQuad.getElements().size());
+	}
+}
@@ -12,7 +12,9 @@
 package org.mini2Dx.core.quadtree;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import junit.framework.Assert;
@@ -138,4 +140,374 @@ public class QuadTest {
 		Assert.assertEquals(false, points.contains(point3));
 		Assert.assertEquals(true, points.contains(point4));
 	}
+	
+	@Test
+	public void testGetElementsWithinRegionWithBuffer() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		rootQuad.add(new Point(32, 32));
+		
+		List<Point> result = new ArrayList<Point>();
+		Rectangle region = new Rectangle(0, 0, 64, 64);
+		for(int i = 0; i < 3; i++) {
+			result.clear();
+			rootQuad.getElementsWithinRegion(result, region);
+			Assert.assertEquals(2, result.size());
+			Assert.assertEquals(true, result.contains(point1));
+		}
+	}
+	
+	@Test
+	public void testGetElementsWithinRegionWithVisitor() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		
+		final List<Point> result = new ArrayList<Point>();
+		rootQuad.getElementsWithinRegion(new QuadElementVisitor<Point>() {
+			@Override
+			public void visit(Point element) {
+				result.add(element);
+			}
+		}, new Rectangle(64, 64, 64, 64));
+		Assert.assertEquals(1, result.size());
+		Assert.assertEquals(point4, result.get(0));
+	}
+	
+	@Test
+	public void testGetElementsIntersectingLineSegmentWithVisitor() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		
+		final List<Point> result = new ArrayList<Point>();
+		rootQuad.getElementsIntersectingLineSegment(new QuadElementVisitor<Point>() {
+			@Override
+			public void visit(Point element) {
+				result.add(element);
+			}
+		}, new LineSegment(0, 0, 128, 128));
+		Assert.assertEquals(2, result.size());
+		Assert.assertEquals(true, result.contains(point1));
+		Assert.assertEquals(true, result.contains(point4));
+	}
+	
+	@Test
+	public void testBulkLoad() {
+		Random random = new Random();
+		Quad<Point> incrementalQuad = new Quad<Point>(2, 0, 0, 128, 128);
+		List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 1000; i++) {
+			Point point = new Point(random.nextInt(128), random.nextInt(128));
+			points.add(point);
+			incrementalQuad.add(point);
+		}
+		points.add(new Point(256, 256));
+		
+		Assert.assertEquals(false, rootQuad.bulkLoad(points));
+		Assert.assertEquals(1000, rootQuad.getElements().size());
+		
+		Rectangle region = new Rectangle(17, 33, 40, 50);
+		List<Point> expected = incrementalQuad.getElementsWithinRegion(region);
+		List<Point> actual = rootQuad.getElementsWithinRegion(region);
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(true, actual.containsAll(expected));
+		
+		Point point = points.get(0);
+		Assert.assertEquals(true, rootQuad.remove(point));
+		Assert.assertEquals(999, rootQuad.getElements().size());
+	}
+	
+	@Test
+	public void testRebuild() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		rootQuad.add(new Point(32, 32));
+		rootQuad.add(new Point(48, 48));
+		Assert.assertEquals(7, rootQuad.getTotalQuads());
+		
+		rootQuad.rebuild();
+		Assert.assertEquals(6, rootQuad.getElements().size());
+		Assert.assertEquals(7, rootQuad.getTotalQuads());
+		
+		point1.set(100, 100);
+		List<Point> points = rootQuad.getElementsWithinRegion(new Rectangle(64, 64, 64, 64));
+		Assert.assertEquals(2, points.size());
+		Assert.assertEquals(true, points.contains(point1));
+	}
+	
+	@Test
+	public void testMerge() {
+		rootQuad.setMergeWatermark(2);
+		Point point5 = new Point(32, 32);
+		Point point6 = new Point(48, 48);
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		rootQuad.add(point5);
+		rootQuad.add(point6);
+		Assert.assertEquals(7, rootQuad.getTotalQuads());
+		Assert.assertEquals(9, rootQuad.getTotalNodes());
+		Assert.assertEquals(3, rootQuad.getDepth());
+		Assert.assertEquals(2, rootQuad.getTotalSplits());
+		
+		rootQuad.resetSplitAndMergeCounts();
+		rootQuad.remove(point6);
+		Assert.assertEquals(7, rootQuad.getTotalQuads());
+		rootQuad.remove(point5);
+		Assert.assertEquals(4, rootQuad.getTotalQuads());
+		Assert.assertEquals(1, rootQuad.getTotalMerges());
+		rootQuad.remove(point4);
+		rootQuad.remove(point3);
+		Assert.assertEquals(4, rootQuad.getTotalQuads());
+		rootQuad.remove(point2);
+		Assert.assertEquals(1, rootQuad.getTotalQuads());
+		Assert.assertEquals(1, rootQuad.getDepth());
+		Assert.assertEquals(2, rootQuad.getTotalMerges());
+		Assert.assertEquals(0, rootQuad.getTotalSplits());
+		Assert.assertEquals(1, rootQuad.getTotalElements());
+		Assert.assertEquals(1, rootQuad.getElements().size());
+	}
+	
+	@Test
+	public void testDefaultMergeWatermark() {
+		rootQuad = new Quad<Point>(4, 0, 0, 128, 128);
+		Assert.assertEquals(2, rootQuad.getMergeWatermark());
+		for(int i = 0; i < 4; i++) {
+			rootQuad.add(new Point(i * 32, i * 32));
+		}
+		Point point = new Point(16, 16);
+		for(int i = 0; i < 4; i++) {
+			rootQuad.add(point);
+			rootQuad.remove(point);
+		}
+		Assert.assertEquals(1, rootQuad.getTotalSplits());
+		Assert.assertEquals(0, rootQuad.getTotalMerges());
+		Assert.assertEquals(4, rootQuad.getTotalElements());
+	}
+	
+	@Test
+	public void testValueEqualElements() {
+		Random random = new Random();
+		List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 300; i++) {
+			Point point = new Point(random.nextInt(8), random.nextInt(8));
+			points.add(point);
+			rootQuad.add(point);
+		}
+		for(int i = 0; i < 2000; i++) {
+			Point point = points.get(random.nextInt(points.size()));
+			switch(random.nextInt(3)) {
+			case 0:
+				Assert.assertEquals(true, rootQuad.remove(point));
+				point.set(random.nextInt(8), random.nextInt(8));
+				Assert.assertEquals(true, rootQuad.add(point));
+				break;
+			default:
+				point.set(random.nextInt(128), random.nextInt(128));
+				break;
+			}
+			Assert.assertEquals(points.size(), rootQuad.getTotalElements());
+		}
+		List<Point> elements = rootQuad.getElements();
+		Assert.assertEquals(points.size(), elements.size());
+		Map<Point, Boolean> found = new IdentityHashMap<Point, Boolean>();
+		for(Point point : elements) {
+			Assert.assertNull(found.put(point, true));
+		}
+	}
+	
+	@Test
+	public void testMergeOnPositionChanged() {
+		Random random = new Random();
+		List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 100; i++) {
+			Point point = new Point(random.nextInt(128), random.nextInt(128));
+			points.add(point);
+			rootQuad.add(point);
+		}
+		for(int i = 0; i < points.size(); i++) {
+			points.get(i).set(random.nextInt(16), random.nextInt(16));
+		}
+		Assert.assertEquals(100, rootQuad.getTotalElements());
+		Assert.assertEquals(100, rootQuad.getElements().size());
+		Assert.assertEquals(100, rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 16, 16)).size());
+		Assert.assertEquals(0, rootQuad.getElementsWithinRegion(new Rectangle(64, 64, 64, 64)).size());
+		Assert.assertEquals(1, rootQuad.topRight.getTotalQuads());
+		Assert.assertEquals(1, rootQuad.bottomLeft.getTotalQuads());
+		Assert.assertEquals(1, rootQuad.bottomRight.getTotalQuads());
+	}
+	
+	@Test
+	public void testFlushMoves() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		rootQuad.setDeferMoves(true);
+		
+		point1.set(100, 10);
+		point1.set(100, 100);
+		point4.set(10, 10);
+		Assert.assertEquals(true, rootQuad.topLeft.getElements().contains(point1));
+		
+		rootQuad.flushMoves();
+		List<Point> points = rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 64, 64));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(point4, points.get(0));
+		points = rootQuad.getElementsWithinRegion(new Rectangle(64, 64, 64, 64));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(point1, points.get(0));
+		Assert.assertEquals(4, rootQuad.getElements().size());
+		
+		rootQuad.setDeferMoves(false);
+		point1.set(0, 0);
+		points = rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 64, 64));
+		Assert.assertEquals(2, points.size());
+	}
+	
+	@Test
+	public void testFlushMovesWithRandomMovement() {
+		Random random = new Random();
+		List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 1000; i++) {
+			Point point = new Point(random.nextInt(128), random.nextInt(128));
+			points.add(point);
+			rootQuad.add(point);
+		}
+		rootQuad.setDeferMoves(true);
+		for(int frame = 0; frame < 10; frame++) {
+			for(int i = 0; i < points.size(); i++) {
+				points.get(i).set(random.nextInt(128), random.nextInt(128));
+				points.get(i).set(random.nextInt(128), random.nextInt(128));
+			}
+			rootQuad.flushMoves();
+			Assert.assertEquals(1000, rootQuad.getElements().size());
+			Assert.assertEquals(1000, rootQuad.getTotalElements());
+		}
+		Rectangle region = new Rectangle(20, 20, 50, 50);
+		int expected = 0;
+		for(int i = 0; i < points.size(); i++) {
+			if(region.contains(points.get(i).getX(), points.get(i).getY())) {
+				expected++;
+			}
+		}
+		Assert.assertEquals(expected, rootQuad.getElementsWithinRegion(region).size());
+	}
+	
+	@Test
+	public void testGetNearest() {
+		Assert.assertEquals(null, rootQuad.getNearest(0, 0));
+		
+		Random random = new Random();
+		List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 1000; i++) {
+			Point point = new Point(random.nextInt(128), random.nextInt(128));
+			points.add(point);
+			rootQuad.add(point);
+		}
+		for(int i = 0; i < 10; i++) {
+			Point target = new Point(random.nextInt(128), random.nextInt(128));
+			Point nearest = rootQuad.getNearest(target.x, target.y);
+			for(Point point : points) {
+				Assert.assertEquals(true, target.dst(nearest) <= target.dst(point));
+			}
+		}
+	}
+	
+	@Test
+	public void testGetKNearest() {
+		Random random = new Random();
+		List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 1000; i++) {
+			Point point = new Point(random.nextInt(128), random.nextInt(128));
+			points.add(point);
+			rootQuad.add(point);
+		}
+		List<Point> result = new ArrayList<Point>();
+		for(int i = 0; i < 10; i++) {
+			Point target = new Point(random.nextInt(128), random.nextInt(128));
+			rootQuad.getKNearest(result, target.x, target.y, 5);
+			Assert.assertEquals(5, result.size());
+			for(int j = 1; j < result.size(); j++) {
+				Assert.assertEquals(true, target.dst(result.get(j - 1)) <= target.dst(result.get(j)));
+			}
+			int closer = 0;
+			for(Point point : points) {
+				if(target.dst(point) < target.dst(result.get(4))) {
+					closer++;
+				}
+			}
+			Assert.assertEquals(true, closer < 5);
+		}
+		Assert.assertEquals(1000, rootQuad.getKNearest(0, 0, 2000).size());
+	}
+	
+	@Test
+	public void testGetElementsWithinRadius() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		rootQuad.add(new Point(32, 32));
+		rootQuad.add(new Point(48, 48));
+		
+		List<Point> points = rootQuad.getElementsWithinRadius(0, 0, 46f);
+		Assert.assertEquals(2, points.size());
+		Assert.assertEquals(true, points.contains(point1));
+		
+		points = rootQuad.getElementsWithinRadius(128, 64, 64f);
+		Assert.assertEquals(2, points.size());
+		Assert.assertEquals(true, points.contains(point2));
+		Assert.assertEquals(true, points.contains(point4));
+	}
+	
+	@Test
+	public void testGetStatistics() {
+		rootQuad.add(point1);
+		rootQuad.add(point2);
+		rootQuad.add(point3);
+		rootQuad.add(point4);
+		
+		QuadStatistics statistics = rootQuad.getStatistics();
+		Assert.assertEquals(5, statistics.getTotalNodes());
+		Assert.assertEquals(4, statistics.getTotalLeaves());
+		Assert.assertEquals(2, statistics.getDepth());
+		Assert.assertEquals(1, statistics.getNodesAtDepth(0));
+		Assert.assertEquals(4, statistics.getNodesAtDepth(1));
+		Assert.assertEquals(4, statistics.getTotalElements());
+		Assert.assertEquals(0, statistics.getInternalElements());
+		Assert.assertEquals(1f, statistics.getAverageLeafElements());
+		Assert.assertEquals(1, statistics.getTotalSplits());
+		
+		List<Point> points = rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 129, 64));
+		rootQuad.getNearest(1, 1);
+		statistics = rootQuad.getStatistics();
+		Assert.assertEquals(1, statistics.getQueries(QuadStatistics.QueryType.REGION));
+		Assert.assertEquals(5, statistics.getVisitedNodes(QuadStatistics.QueryType.REGION));
+		Assert.assertEquals(4, statistics.getCandidates(QuadStatistics.QueryType.REGION));
+		Assert.assertEquals(points.size(), statistics.getHits(QuadStatistics.QueryType.REGION));
+		Assert.assertEquals(4f / points.size(), statistics.getCandidateToHitRatio(QuadStatistics.QueryType.REGION));
+		Assert.assertEquals(1, statistics.getQueries(QuadStatistics.QueryType.NEAREST));
+		Assert.assertEquals(1, statistics.getHits(QuadStatistics.QueryType.NEAREST));
+		
+		point1.set(120, 120);
+		point4.set(127, 127);
+		statistics = rootQuad.getStatistics();
+		Assert.assertEquals(2, statistics.getPositionChanges());
+		Assert.assertEquals(1, statistics.getRelocations());
+		
+		rootQuad.resetStatistics();
+		rootQuad.getStatistics(statistics);
+		Assert.assertEquals(0, statistics.getQueries(QuadStatistics.QueryType.REGION));
+		Assert.assertEquals(0, statistics.getRelocations());
+		Assert.assertEquals(4, statistics.getTotalElements());
+	}
 }
@@ -11,15 +11,25 @@
  */
 package org.mini2Dx.core.quadtree;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import junit.framework.Assert;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mini2Dx.core.geom.LineSegment;
+import org.mini2Dx.core.geom.Point;
 import org.mini2Dx.core.geom.Rectangle;
 
 /**
@@ -170,4 +180,393 @@ public class RegionQuadTest {
 		Assert.assertEquals(true, rectangles.contains(rectangle5));
 		Assert.assertEquals(true, rectangles.contains(rectangle6));
 	}
+	
+	@Test
+	public void testGetElementsWithBuffer() {
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		rootQuad.add(rectangle4);
+		rootQuad.add(new Rectangle(48, 48, 32, 32));
+		
+		List<Rectangle> result = new ArrayList<Rectangle>();
+		rootQuad.getElements(result);
+		Assert.assertEquals(5, result.size());
+		Assert.assertEquals(rootQuad.getElements().size(), result.size());
+	}
+	
+	@Test
+	public void testGetElementsWithinRegionWithVisitor() {
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		rootQuad.add(rectangle4);
+		Rectangle rectangle5 = new Rectangle(48, 48, 32, 32);
+		rootQuad.add(rectangle5);
+		
+		final List<Rectangle> result = new ArrayList<Rectangle>();
+		QuadElementVisitor<Rectangle> visitor = new QuadElementVisitor<Rectangle>() {
+			@Override
+			public void visit(Rectangle element) {
+				result.add(element);
+			}
+		};
+		rootQuad.getElementsWithinRegion(visitor, new Rectangle(0, 0, 64, 64));
+		Assert.assertEquals(2, result.size());
+		Assert.assertEquals(true, result.contains(rectangle1));
+		Assert.assertEquals(true, result.contains(rectangle5));
+		
+		result.clear();
+		rootQuad.getElementsIntersectingLineSegment(visitor, new LineSegment(0,  0, 128, 128));
+		Assert.assertEquals(3, result.size());
+		Assert.assertEquals(true, result.contains(rectangle1));
+		Assert.assertEquals(true, result.contains(rectangle4));
+		Assert.assertEquals(true, result.contains(rectangle5));
+	}
+	
+	@Test
+	public void testBulkLoad() {
+		Random random = new Random();
+		RegionQuad<Rectangle> incrementalQuad = new RegionQuad<Rectangle>(2, 0, 0, 128, 128);
+		List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		for(int i = 0; i < 1000; i++) {
+			Rectangle rectangle = new Rectangle(random.nextInt(96), random.nextInt(96), random.nextInt(32), random.nextInt(32));
+			rectangles.add(rectangle);
+			incrementalQuad.add(rectangle);
+		}
+		
+		Assert.assertEquals(true, rootQuad.bulkLoad(rectangles));
+		Assert.assertEquals(1000, rootQuad.getElements().size());
+		
+		Rectangle region = new Rectangle(17, 33, 40, 50);
+		List<Rectangle> expected = incrementalQuad.getElementsWithinRegion(region);
+		List<Rectangle> actual = rootQuad.getElementsWithinRegion(region);
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(true, actual.containsAll(expected));
+		
+		for(int i = rectangles.size() - 1; i >= 0 ; i--) {
+			Assert.assertEquals(true, rootQuad.remove(rectangles.get(i)));
+		}
+		Assert.assertEquals(0, rootQuad.getElements().size());
+	}
+	
+	@Test
+	public void testMerge() {
+		rootQuad.setMergeWatermark(2);
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		rootQuad.add(rectangle4);
+		Assert.assertEquals(4, rootQuad.getTotalQuads());
+		
+		rootQuad.remove(rectangle4);
+		rootQuad.remove(rectangle3);
+		Assert.assertEquals(4, rootQuad.getTotalQuads());
+		
+		rectangle2.setX(0);
+		Assert.assertEquals(4, rootQuad.getTotalQuads());
+		List<Rectangle> rectangles = rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 32, 32));
+		Assert.assertEquals(2, rectangles.size());
+		
+		rootQuad.remove(rectangle2);
+		Assert.assertEquals(1, rootQuad.getTotalQuads());
+		Assert.assertEquals(1, rootQuad.getTotalMerges());
+		
+		rectangles = rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 128, 128));
+		Assert.assertEquals(1, rectangles.size());
+		Assert.assertEquals(true, rectangles.contains(rectangle1));
+	}
+	
+	@Test
+	public void testFlushMoves() {
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		rootQuad.add(rectangle4);
+		rootQuad.setDeferMoves(true);
+		
+		rectangle1.setX(96);
+		rectangle1.setY(96);
+		Assert.assertEquals(4, rootQuad.getElements().size());
+		
+		rootQuad.flushMoves();
+		List<Rectangle> rectangles = rootQuad.getElementsWithinRegion(new Rectangle(0, 0, 64, 64));
+		Assert.assertEquals(0, rectangles.size());
+		rectangles = rootQuad.getElementsWithinRegion(new Rectangle(64, 64, 64, 64));
+		Assert.assertEquals(2, rectangles.size());
+		Assert.assertEquals(true, rectangles.contains(rectangle1));
+		Assert.assertEquals(4, rootQuad.getElements().size());
+	}
+	
+	@Test
+	public void testGetNearest() {
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		rootQuad.add(rectangle4);
+		Rectangle rectangle5 = new Rectangle(48, 48, 32, 32);
+		rootQuad.add(rectangle5);
+		
+		Assert.assertEquals(rectangle5, rootQuad.getNearest(64, 64));
+		Assert.assertEquals(rectangle4, rootQuad.getNearest(120, 120));
+		Assert.assertEquals(rectangle2, rootQuad.getNearest(90, 10));
+		
+		List<Rectangle> rectangles = rootQuad.getKNearest(40, 40, 2);
+		Assert.assertEquals(2, rectangles.size());
+		Assert.assertEquals(rectangle5, rectangles.get(0));
+		Assert.assertEquals(rectangle1, rectangles.get(1));
+		
+		rectangles = rootQuad.getElementsWithinRadius(64, 16, 33f);
+		Assert.assertEquals(3, rectangles.size());
+		Assert.assertEquals(true, rectangles.contains(rectangle1));
+		Assert.assertEquals(true, rectangles.contains(rectangle2));
+		Assert.assertEquals(true, rectangles.contains(rectangle5));
+	}
+	
+	@Test
+	public void testRaycast() {
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		rootQuad.add(rectangle4);
+		Rectangle rectangle5 = new Rectangle(48, 0, 32, 32);
+		rootQuad.add(rectangle5);
+		
+		LineSegment lineSegment = new LineSegment(127, 16, 0, 16);
+		RaycastHit<Rectangle> hit = rootQuad.raycastFirst(lineSegment);
+		Assert.assertEquals(rectangle2, hit.getElement());
+		Assert.assertEquals(0f, hit.getDistance());
+		Assert.assertEquals(127f, hit.getX());
+		
+		lineSegment.set(90, 16, 0, 16);
+		hit = rootQuad.raycastFirst(lineSegment);
+		Assert.assertEquals(rectangle5, hit.getElement());
+		Assert.assertEquals(10f, hit.getDistance(), 0.001f);
+		Assert.assertEquals(80f, hit.getX(), 0.001f);
+		Assert.assertEquals(16f, hit.getY(), 0.001f);
+		
+		List<RaycastHit<Rectangle>> hits = rootQuad.raycastAll(lineSegment);
+		Assert.assertEquals(2, hits.size());
+		Assert.assertEquals(rectangle5, hits.get(0).getElement());
+		Assert.assertEquals(rectangle1, hits.get(1).getElement());
+		Assert.assertEquals(58f, hits.get(1).getDistance(), 0.001f);
+		
+		lineSegment.set(40, 40, 90, 40);
+		Assert.assertEquals(null, rootQuad.raycastFirst(lineSegment));
+		Assert.assertEquals(0, rootQuad.raycastAll(lineSegment).size());
+	}
+	
+	@Test
+	public void testRaycastRotated() {
+		Rectangle rectangle5 = new Rectangle(60, 60, 8, 8);
+		rectangle5.rotateAround(new Point(64, 64), 45f);
+		rootQuad.add(rectangle5);
+		
+		RaycastHit<Rectangle> hit = rootQuad.raycastFirst(new LineSegment(0, 64, 128, 64));
+		Assert.assertEquals(rectangle5, hit.getElement());
+		Assert.assertEquals(64f - (float) Math.sqrt(32), hit.getX(), 0.01f);
+		Assert.assertEquals(null, rootQuad.raycastFirst(new LineSegment(0, 58f, 128, 58f)));
+	}
+	
+	@Test
+	public void testForEachOverlappingPair() {
+		Random random = new Random();
+		final List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		final Map<Rectangle, Integer> indices = new IdentityHashMap<Rectangle, Integer>();
+		for(int i = 0; i < 200; i++) {
+			Rectangle rect = new Rectangle(random.nextInt(112), random.nextInt(112), 1 + random.nextInt(16), 1 + random.nextInt(16));
+			rectangles.add(rect);
+			indices.put(rect, i);
+			rootQuad.add(rect);
+		}
+		
+		final Set<String> pairs = new HashSet<String>();
+		rootQuad.forEachOverlappingPair(new PairCallback<Rectangle>() {
+			@Override
+			public void onPair(Rectangle elementA, Rectangle elementB) {
+				Assert.assertEquals(true, elementA.intersects(elementB));
+				int indexA = indices.get(elementA);
+				int indexB = indices.get(elementB);
+				Assert.assertEquals(true, pairs.add(Math.min(indexA, indexB) + "," + Math.max(indexA, indexB)));
+			}
+		});
+		
+		for(int i = 0; i < rectangles.size(); i++) {
+			for(int j = i + 1; j < rectangles.size(); j++) {
+				Rectangle rectA = rectangles.get(i);
+				Rectangle rectB = rectangles.get(j);
+				if(rectA.getMaxX() > rectB.getMinX() && rectB.getMaxX() > rectA.getMinX()
+						&& rectA.getMaxY() > rectB.getMinY() && rectB.getMaxY() > rectA.getMinY()) {
+					Assert.assertEquals(true, pairs.contains(i + "," + j));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testForEachOverlappingPairTouchingMidlines() {
+		Random random = new Random();
+		final List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		final Map<Rectangle, Integer> indices = new IdentityHashMap<Rectangle, Integer>();
+		for(int i = 0; i < 200; i++) {
+			Rectangle rect = new Rectangle(random.nextInt(15) * 8, random.nextInt(15) * 8, 8 * (1 + random.nextInt(2)), 8 * (1 + random.nextInt(2)));
+			rectangles.add(rect);
+			indices.put(rect, i);
+			rootQuad.add(rect);
+		}
+		Rectangle left = new Rectangle(56, 0, 8, 8);
+		Rectangle right = new Rectangle(64, 0, 8, 8);
+		rectangles.add(left);
+		indices.put(left, rectangles.size() - 1);
+		rootQuad.add(left);
+		rectangles.add(right);
+		indices.put(right, rectangles.size() - 1);
+		rootQuad.add(right);
+		
+		final Set<String> pairs = new HashSet<String>();
+		rootQuad.forEachOverlappingPair(new PairCallback<Rectangle>() {
+			@Override
+			public void onPair(Rectangle elementA, Rectangle elementB) {
+				Assert.assertEquals(true, elementA.intersects(elementB));
+				int indexA = indices.get(elementA);
+				int indexB = indices.get(elementB);
+				Assert.assertEquals(true, pairs.add(Math.min(indexA, indexB) + "," + Math.max(indexA, indexB)));
+			}
+		});
+		
+		int expected = 0;
+		for(int i = 0; i < rectangles.size(); i++) {
+			for(int j = i + 1; j < rectangles.size(); j++) {
+				if(rectangles.get(i).intersects(rectangles.get(j))) {
+					Assert.assertEquals(true, pairs.contains(i + "," + j));
+					expected++;
+				}
+			}
+		}
+		Assert.assertEquals(expected, pairs.size());
+		Assert.assertEquals(true, pairs.contains((rectangles.size() - 2) + "," + (rectangles.size() - 1)));
+	}
+	
+	@Test
+	public void testGetStatistics() {
+		rootQuad.add(rectangle1);
+		rootQuad.add(rectangle2);
+		rootQuad.add(rectangle3);
+		rootQuad.add(new Rectangle(48, 48, 32, 32));
+		
+		QuadStatistics statistics = rootQuad.getStatistics();
+		Assert.assertEquals(5, statistics.getTotalNodes());
+		Assert.assertEquals(4, statistics.getTotalElements());
+		Assert.assertEquals(1, statistics.getInternalElements());
+		Assert.assertEquals(0, statistics.getMinLeafElements());
+		Assert.assertEquals(1, statistics.getMaxLeafElements());
+		
+		rootQuad.raycastFirst(new LineSegment(0, 16, 127, 16));
+		statistics = rootQuad.getStatistics();
+		Assert.assertEquals(1, statistics.getQueries(QuadStatistics.QueryType.RAYCAST));
+		Assert.assertEquals(1, statistics.getHits(QuadStatistics.QueryType.RAYCAST));
+	}
+	
+	@Test
+	public void testSnapshot() throws IOException {
+		Random random = new Random();
+		List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		for(int i = 0; i < 200; i++) {
+			Rectangle rect = new Rectangle(random.nextInt(112), random.nextInt(112), 1 + random.nextInt(16), 1 + random.nextInt(16));
+			rectangles.add(rect);
+			rootQuad.add(rect);
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		rootQuad.writeSnapshot(new DataOutputStream(bytes), rectangles);
+		
+		RegionQuad<Rectangle> loadedQuad = new RegionQuad<Rectangle>(2, 0, 0, 128, 128);
+		loadedQuad.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), rectangles);
+		Assert.assertEquals(rootQuad.getTotalNodes(), loadedQuad.getTotalNodes());
+		Assert.assertEquals(rootQuad.getDepth(), loadedQuad.getDepth());
+		Assert.assertEquals(200, loadedQuad.getTotalElements());
+		Assert.assertEquals(0, loadedQuad.getTotalSplits());
+		
+		for(int i = 0; i < 20; i++) {
+			Rectangle region = new Rectangle(random.nextInt(96), random.nextInt(96), 1 + random.nextInt(32), 1 + random.nextInt(32));
+			List<Rectangle> expected = rootQuad.getElementsWithinRegion(region);
+			List<Rectangle> actual = loadedQuad.getElementsWithinRegion(region);
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertEquals(true, actual.containsAll(expected));
+		}
+		
+		Rectangle moved = rectangles.get(0);
+		moved.set(120, 120, 4, 4);
+		Assert.assertEquals(true, loadedQuad.getElementsWithinRegion(new Rectangle(118, 118, 8, 8)).contains(moved));
+		
+		try {
+			new RegionQuad<Rectangle>(2, 0, 0, 64, 64).readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), rectangles);
+			Assert.fail("Expected bounds mismatch");
+		} catch (IOException e) {
+		}
+	}
+
+	@Test
+	public void testSnapshotTruncated() throws IOException {
+		List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		for(int i = 0; i < 20; i++) {
+			Rectangle rect = new Rectangle(i * 6, i * 6, 4, 4);
+			rectangles.add(rect);
+			rootQuad.add(rect);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		rootQuad.writeSnapshot(new DataOutputStream(bytes), rectangles);
+		byte[] truncated = new byte[bytes.size() - 6];
+		System.arraycopy(bytes.toByteArray(), 0, truncated, 0, truncated.length);
+		
+		RegionQuad<Rectangle> loadedQuad = new RegionQuad<Rectangle>(2, 0, 0, 128, 128);
+		try {
+			loadedQuad.readSnapshot(new DataInputStream(new ByteArrayInputStream(truncated)), rectangles);
+			Assert.fail("Expected truncated snapshot to fail");
+		} catch (IOException e) {
+		}
+		Assert.assertEquals(0, loadedQuad.getTotalElements());
+		Assert.assertEquals(1, loadedQuad.getTotalNodes());
+		rectangles.get(0).set(120, 120, 4, 4);
+		Assert.assertEquals(0, loadedQuad.getTotalElements());
+	}
+	
+	@Test
+	public void testSnapshotInvalidElements() throws IOException {
+		List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		for(int i = 0; i < 20; i++) {
+			Rectangle rect = new Rectangle(i * 6, i * 6, 4, 4);
+			rectangles.add(rect);
+			rootQuad.add(rect);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		rootQuad.writeSnapshot(new DataOutputStream(bytes), rectangles);
+		
+		RegionQuad<Rectangle> loadedQuad = new RegionQuad<Rectangle>(2, 0, 0, 128, 128);
+		try {
+			loadedQuad.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), rectangles.subList(0, 10));
+			Assert.fail("Expected out of range index to fail");
+		} catch (IOException e) {
+		}
+		Assert.assertEquals(0, loadedQuad.getTotalElements());
+		Assert.assertEquals(1, loadedQuad.getTotalNodes());
+		
+		List<Rectangle> withNull = new ArrayList<Rectangle>(rectangles);
+		withNull.set(5, null);
+		try {
+			loadedQuad.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), withNull);
+			Assert.fail("Expected null element to fail");
+		} catch (IOException e) {
+		}
+		Assert.assertEquals(0, loadedQuad.getTotalElements());
+		
+		rectangles.get(0).set(-64, -64, 4, 4);
+		try {
+			loadedQuad.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), rectangles);
+			Assert.fail("Expected element outside of its quad to fail");
+		} catch (IOException e) {
+		}
+		Assert.assertEquals(0, loadedQuad.getTotalElements());
+		Assert.assertEquals(1, loadedQuad.getTotalNodes());
+	}
 }
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mini2Dx.core.geom.LineSegment;
+import org.mini2Dx.core.geom.Point;
+import org.mini2Dx.core.geom.Rectangle;
+
+/**
+ * Unit tests for {@link SpatialHash}
+ */
+public class SpatialHashTest {
+	private SpatialHash<Point> spatialHash;
+	private Point point1, point2, point3, point4;
+
+	@Before
+	public void setup() {
+		spatialHash = new SpatialHash<Point>(32f);
+		point1 = new Point(0, 0);
+		point2 = new Point(128, 0);
+		point3 = new Point(0, 128);
+		point4 = new Point(-16, -16);
+	}
+
+	@Test
+	public void testAddAndRemove() {
+		Random random = new Random();
+		List<Point> points = new ArrayList<Point>();
+		for(int i = 0; i < 1000; i++) {
+			Point point = new Point(random.nextInt(512) - 256, random.nextInt(512) - 256);
+			points.add(point);
+			Assert.assertEquals(true, spatialHash.add(point));
+			Assert.assertEquals(i + 1, spatialHash.getTotalElements());
+		}
+		Assert.assertEquals(false, spatialHash.add(points.get(0)));
+		Assert.assertEquals(1000, spatialHash.getElements().size());
+
+		for(int i = points.size() - 1; i >= 0; i--) {
+			Assert.assertEquals(true, spatialHash.remove(points.get(i)));
+			Assert.assertEquals(i, spatialHash.getTotalElements());
+		}
+		Assert.assertEquals(false, spatialHash.remove(point1));
+		Assert.assertEquals(0, spatialHash.getTotalCells());
+	}
+
+	@Test
+	public void testGetElementsWithinRegion() {
+		spatialHash.add(point1);
+		spatialHash.add(point2);
+		spatialHash.add(point3);
+		spatialHash.add(point4);
+
+		List<Point> points = spatialHash.getElementsWithinRegion(new Rectangle(-32, -32, 64, 64));
+		Assert.assertEquals(2, points.size());
+		Assert.assertEquals(true, points.contains(point1));
+		Assert.assertEquals(true, points.contains(point4));
+
+		points = spatialHash.getElementsWithinRegion(new Rectangle(-1024, -1024, 4096, 4096));
+		Assert.assertEquals(4, points.size());
+	}
+
+	@Test
+	public void testGetElementsIntersectingLineSegment() {
+		spatialHash.add(point1);
+		spatialHash.add(point2);
+		spatialHash.add(point3);
+		spatialHash.add(point4);
+
+		List<Point> points = spatialHash.getElementsIntersectingLineSegment(new LineSegment(-32, -32, 64, 64));
+		Assert.assertEquals(2, points.size());
+		Assert.assertEquals(true, points.contains(point1));
+		Assert.assertEquals(true, points.contains(point4));
+	}
+
+	@Test
+	public void testPositionChanged() {
+		spatialHash.add(point1);
+		spatialHash.add(point2);
+		Assert.assertEquals(2, spatialHash.getTotalCells());
+
+		point1.set(132, 4);
+		Assert.assertEquals(1, spatialHash.getTotalCells());
+		point1.set(100, 4);
+		Assert.assertEquals(2, spatialHash.getTotalCells());
+		List<Point> points = spatialHash.getElementsWithinRegion(new Rectangle(96, 0, 16, 16));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(point1, points.get(0));
+		Assert.assertEquals(0, spatialHash.getElementsWithinRegion(new Rectangle(-8, -8, 16, 16)).size());
+
+		spatialHash.remove(point1);
+		point1.set(0, 0);
+		Assert.assertEquals(1, spatialHash.getTotalElements());
+	}
+
+	@Test
+	public void testClear() {
+		spatialHash.add(point1);
+		spatialHash.add(point2);
+		spatialHash.clear();
+		Assert.assertEquals(0, spatialHash.getTotalElements());
+		Assert.assertEquals(0, spatialHash.getTotalCells());
+		Assert.assertEquals(true, spatialHash.add(point1));
+	}
+
+	@Test
+	public void testDistantAndNegativeCells() {
+		spatialHash = new SpatialHash<Point>(1f);
+		Point origin = new Point(0.5f, 0.5f);
+		Point far = new Point(65536.5f, 0.5f);
+		Point negative = new Point(-32768.5f, -65536.5f);
+		Point wrapped = new Point(32768.5f, 0.5f);
+		spatialHash.add(origin);
+		spatialHash.add(far);
+		spatialHash.add(negative);
+		spatialHash.add(wrapped);
+		Assert.assertEquals(4, spatialHash.getTotalCells());
+
+		List<Point> points = spatialHash.getElementsWithinRegion(new Rectangle(65536f, 0f, 1f, 1f));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(far, points.get(0));
+		points = spatialHash.getElementsWithinRegion(new Rectangle(65530f, -4f, 16f, 16f));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(far, points.get(0));
+		points = spatialHash.getElementsWithinRegion(new Rectangle(-32769f, -65537f, 1f, 1f));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(negative, points.get(0));
+		points = spatialHash.getElementsWithinRegion(new Rectangle(32768f, 0f, 1f, 1f));
+		Assert.assertEquals(1, points.size());
+		Assert.assertEquals(wrapped, points.get(0));
+
+		Assert.assertEquals(true, spatialHash.remove(far));
+		Assert.assertEquals(3, spatialHash.getTotalCells());
+		Assert.assertEquals(1, spatialHash.getElementsWithinRegion(new Rectangle(0f, 0f, 1f, 1f)).size());
+	}
+}
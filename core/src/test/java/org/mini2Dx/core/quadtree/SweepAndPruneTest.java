@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2015, mini2Dx Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the mini2Dx nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.mini2Dx.core.quadtree;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mini2Dx.core.geom.Rectangle;
+
+/**
+ * Unit tests for {@link SweepAndPrune}
+ */
+public class SweepAndPruneTest implements OverlapListener<Rectangle> {
+	private SweepAndPrune<Rectangle> sweepAndPrune;
+	private List<Rectangle> rectangles;
+	private Set<String> overlaps;
+	private int began, ended;
+
+	@Before
+	public void setup() {
+		sweepAndPrune = new SweepAndPrune<Rectangle>();
+		sweepAndPrune.addOverlapListener(this);
+		rectangles = new ArrayList<Rectangle>();
+		overlaps = new HashSet<String>();
+		began = 0;
+		ended = 0;
+	}
+
+	@Test
+	public void testOverlapEvents() {
+		Rectangle rectangle1 = new Rectangle(0f, 0f, 10f, 10f);
+		Rectangle rectangle2 = new Rectangle(20f, 0f, 10f, 10f);
+		Assert.assertEquals(true, sweepAndPrune.add(rectangle1));
+		Assert.assertEquals(true, sweepAndPrune.add(rectangle2));
+		Assert.assertEquals(false, sweepAndPrune.add(rectangle2));
+
+		sweepAndPrune.update();
+		Assert.assertEquals(0, began);
+
+		rectangle2.setX(5f);
+		sweepAndPrune.update();
+		Assert.assertEquals(1, began);
+		Assert.assertEquals(1, sweepAndPrune.getTotalOverlappingPairs());
+
+		rectangle2.setY(5f);
+		sweepAndPrune.update();
+		Assert.assertEquals(1, began);
+		Assert.assertEquals(0, ended);
+
+		rectangle2.setY(11f);
+		sweepAndPrune.update();
+		Assert.assertEquals(1, ended);
+		Assert.assertEquals(0, sweepAndPrune.getTotalOverlappingPairs());
+
+		rectangle2.setY(10f);
+		sweepAndPrune.update();
+		Assert.assertEquals(2, began);
+
+		Assert.assertEquals(true, sweepAndPrune.remove(rectangle1));
+		Assert.assertEquals(false, sweepAndPrune.remove(rectangle1));
+		Assert.assertEquals(2, ended);
+		Assert.assertEquals(1, sweepAndPrune.getTotalElements());
+	}
+
+	@Test
+	public void testMatchesBruteForce() {
+		Random random = new Random(4321L);
+		for (int i = 0; i < 100; i++) {
+			Rectangle rectangle = new Rectangle(random.nextInt(400),
+					random.nextInt(400), 5 + random.nextInt(30),
+					5 + random.nextInt(30));
+			rectangles.add(rectangle);
+			sweepAndPrune.add(rectangle);
+		}
+
+		for (int frame = 0; frame < 50; frame++) {
+			for (int i = 0; i < rectangles.size(); i++) {
+				Rectangle rectangle = rectangles.get(i);
+				rectangle.setPosition(
+						rectangle.getX() + random.nextInt(9) - 4,
+						rectangle.getY() + random.nextInt(9) - 4);
+			}
+			if (frame % 10 == 5) {
+				Rectangle removed = rectangles.remove(random
+						.nextInt(rectangles.size()));
+				sweepAndPrune.remove(removed);
+				Rectangle added = new Rectangle(random.nextInt(400),
+						random.nextInt(400), 20f, 20f);
+				rectangles.add(added);
+				sweepAndPrune.add(added);
+			}
+			sweepAndPrune.update();
+
+			Set<String> expected = new HashSet<String>();
+			for (int i = 0; i < rectangles.size(); i++) {
+				for (int j = i + 1; j < rectangles.size(); j++) {
+					if (rectangles.get(i).intersects(rectangles.get(j))) {
+						expected.add(getKey(rectangles.get(i),
+								rectangles.get(j)));
+					}
+				}
+			}
+			Assert.assertEquals(expected, overlaps);
+			Assert.assertEquals(expected.size(),
+					sweepAndPrune.getTotalOverlappingPairs());
+		}
+	}
+
+	@Test
+	public void testRemoveDuringNotification() {
+		final Rectangle rectangle1 = new Rectangle(0f, 0f, 10f, 10f);
+		Rectangle rectangle2 = new Rectangle(5f, 5f, 10f, 10f);
+		Rectangle rectangle3 = new Rectangle(8f, 8f, 10f, 10f);
+		sweepAndPrune.add(rectangle1);
+		sweepAndPrune.add(rectangle2);
+		sweepAndPrune.add(rectangle3);
+		sweepAndPrune.addOverlapListener(new OverlapListener<Rectangle>() {
+			@Override
+			public void overlapBegan(Rectangle elementA, Rectangle elementB) {
+				sweepAndPrune.remove(rectangle1);
+			}
+
+			@Override
+			public void overlapEnded(Rectangle elementA, Rectangle elementB) {
+			}
+		});
+		sweepAndPrune.update();
+
+		Assert.assertEquals(false, sweepAndPrune.contains(rectangle1));
+		Assert.assertEquals(1, sweepAndPrune.getTotalOverlappingPairs());
+		Assert.assertEquals(began - ended, overlaps.size());
+	}
+
+	@Override
+	public void overlapBegan(Rectangle elementA, Rectangle elementB) {
+		Assert.assertTrue(overlaps.add(getKey(elementA, elementB)));
+		began++;
+	}
+
+	@Override
+	public void overlapEnded(Rectangle elementA, Rectangle elementB) {
+		Assert.assertTrue(overlaps.remove(getKey(elementA, elementB)));
+		ended++;
+	}
+
+	private String getKey(Rectangle elementA, Rectangle elementB) {
+		int hashA = System.identityHashCode(elementA);
+		int hashB = System.identityHashCode(elementB);
+		return Math.min(hashA, hashB) + ":" + Math.max(hashA, hashB);
+	}
+}
@@ -14,7 +14,6 @@ package org.mini2Dx.tiled.renderer;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.mini2Dx.core.geom.Rectangle;
 import org.mini2Dx.core.graphics.Graphics;
 import org.mini2Dx.tiled.TileLayer;
 import org.mini2Dx.tiled.TiledMap;
@@ -56,23 +55,11 @@ public class OrthogonalTileLayerRenderer implements TileLayerRenderer {
 		int tileRenderX = MathUtils.round(renderX - startTileRenderX);
 		int tileRenderY = MathUtils.round(renderY - startTileRenderY);
 
-		Rectangle existingClip = g.removeClip();
-		Rectangle newClip = new Rectangle(startTileRenderX, startTileRenderY,
+		g.translate(-tileRenderX, -tileRenderY);
+		g.pushClip(startTileRenderX, startTileRenderY,
 				widthInTiles * tiledMap.getTileWidth(), heightInTiles
 						* tiledMap.getTileHeight());
 
-		g.translate(-tileRenderX, -tileRenderY);
-
-		if (existingClip != null) {
-			if (existingClip.intersects(newClip)) {
-				g.setClip(existingClip.intersection(newClip));
-			} else {
-				g.setClip(existingClip);
-			}
-		} else {
-			g.setClip(newClip);
-		}
-
 		if (cacheLayers) {
 			renderCachedLayer(g, layer, tileRenderX, tileRenderY, startTileX,
 					startTileY, widthInTiles, heightInTiles);
@@ -81,13 +68,8 @@ public class OrthogonalTileLayerRenderer implements TileLayerRenderer {
 					startTileY, widthInTiles, heightInTiles);
 		}
 
-		g.removeClip();
+		g.popClip();
 		g.translate(tileRenderX, tileRenderY);
-
-		if (existingClip != null) {
-			g.setClip(existingClip.getX(), existingClip.getY(),
-					existingClip.getWidth(), existingClip.getHeight());
-		}
 	}
 
 	private void renderCachedLayer(Graphics g, TileLayer layer, int renderX,